@@ -0,0 +1,408 @@
+import entities.CartItem;
+import entities.Customer;
+import entities.Inventory;
+import entities.ShoppingCart;
+import util.CustomerStore;
+import util.InventoryStore;
+import util.LatencyRecorder;
+import util.MetricsRegistry;
+import util.Money;
+import util.OrderLedger;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Places orders in four stages: funds verification, stock hold, persistence and confirmation.
+ * Verification and pinning the cart's stock holds only touch memory and run on the common pool. Persistence
+ * runs on a single thread, which checks each order against the saved funds, numbers it, commits its held
+ * stock and records its stock changes, remaining funds and ledger line as one entry in the inventory store
+ * in the same step, then appends it to the order ledger. Checkpoints run on the same thread, so a snapshot
+ * never includes stock taken by an order which the store has not recorded. The store commits entries in
+ * groups, so orders persisted together share one fsync, and an order is confirmed as soon as its entry is
+ * durable; the ledger is written behind it, and is only waited for if the store does not keep orders. The
+ * customer file is only updated after that, and it and the ledger are made durable before the store is
+ * checkpointed. Saving funds and confirming orders run on a completion thread of their own, so the store's
+ * writer thread only writes and syncs. A checkpoint which an order makes due runs as a task of its own once
+ * the orders before it are durable, so neither that order nor the persistence thread waits for it. Edits and
+ * deletions of products run on the persistence thread as well, between orders, so each order is recorded
+ * under the current keys of its products, which it looks up by id, and an order of a product deleted since it
+ * was added to the cart fails. An order which cannot be written is not saved: its stock is put back, in a
+ * store which had already changed its records in place as well, and its funds forgotten, and its future
+ * completes normally with that status.
+ * The latency of every stage and of whole orders is recorded in the metrics registry, and orders are
+ * counted by their outcome.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class CheckoutPipeline {
+    private final Supplier<InventoryStore> inventoryStore;
+    private final Supplier<Inventory> inventory;
+    private final Supplier<CustomerStore> customerStore;
+    private final OrderLedger orderLedger;
+    private final ExecutorService persistenceExecutor;
+    private final ExecutorService completionExecutor;
+    // remaining funds of orders which are durable but not yet written to the customer file
+    private final Map<String, Long> unsavedFunds = new ConcurrentHashMap<>();
+    private CompletableFuture<?> lastPersisted = CompletableFuture.completedFuture(null);
+    // only read and changed on the persistence thread
+    private boolean checkpointScheduled;
+    private final LatencyRecorder fundsLatency = MetricsRegistry.getDefault().latency("checkout.funds");
+    private final LatencyRecorder stockLatency = MetricsRegistry.getDefault().latency("checkout.stock");
+    private final LatencyRecorder persistLatency = MetricsRegistry.getDefault().latency("checkout.persist");
+    private final LatencyRecorder confirmLatency = MetricsRegistry.getDefault().latency("checkout.confirm");
+    private final LatencyRecorder orderLatency = MetricsRegistry.getDefault().latency("checkout");
+    private final Map<MonashMerchantSystem.OrderStatus, LongAdder> ordersByStatus = countersByStatus();
+
+    /**
+     * An order passing through the pipeline.
+     */
+    public static class Order {
+        private final Customer customer;
+        private final ShoppingCart cart;
+        private final List<CartItem> items;
+        private final long started = System.nanoTime();
+        private final long totalCents;
+        private long remainingCents;
+        private long orderNumber;
+        private MonashMerchantSystem.OrderStatus status;
+
+        private Order(Customer customer, ShoppingCart cart) {
+            this.customer = customer;
+            this.cart = cart;
+            this.items = cart.getItems();
+            this.totalCents = cart.getTotalCents();
+        }
+
+        /**
+         * Returns the customer who placed the order.
+         *
+         * @return the customer
+         */
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        /**
+         * Returns the items ordered, as they were in the cart when checkout started.
+         *
+         * @return the ordered items
+         */
+        public List<CartItem> getItems() {
+            return items;
+        }
+
+        /**
+         * Returns the total price of the order.
+         *
+         * @return the total price in cents
+         */
+        public long getTotalCents() {
+            return totalCents;
+        }
+
+        /**
+         * Returns the total price of the order.
+         *
+         * @return the total price
+         */
+        public double getTotal() {
+            return Money.toDollars(totalCents);
+        }
+
+        /**
+         * Returns the number the order was recorded under in the order ledger.
+         *
+         * @return the order number, or 0 if the order was not placed
+         */
+        public long getOrderNumber() {
+            return orderNumber;
+        }
+
+        /**
+         * Returns the customer's funds after the order was placed.
+         *
+         * @return the remaining funds
+         */
+        public double getRemainingFunds() {
+            return Money.toDollars(remainingCents);
+        }
+
+        /**
+         * Returns the outcome of the order.
+         *
+         * @return the order status, or null while the order is still being placed
+         */
+        public MonashMerchantSystem.OrderStatus getStatus() {
+            return status;
+        }
+
+        private boolean isFailed() {
+            return status != null;
+        }
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param inventoryStore supplies the store which records the stock changes
+     * @param inventory      supplies the inventory checkpointed by the store
+     * @param customerStore  supplies the store which records the customers' funds
+     * @param orderLedger    the ledger which records the placed orders
+     */
+    public CheckoutPipeline(Supplier<InventoryStore> inventoryStore, Supplier<Inventory> inventory,
+                            Supplier<CustomerStore> customerStore, OrderLedger orderLedger) {
+        this.inventoryStore = inventoryStore;
+        this.inventory = inventory;
+        this.customerStore = customerStore;
+        this.orderLedger = orderLedger;
+        this.persistenceExecutor = singleThreadExecutor("order-persistence");
+        // one thread, so orders complete in the order their writes did
+        this.completionExecutor = singleThreadExecutor("order-completion");
+    }
+
+    /**
+     * Starts placing an order for the items in a shopping cart.
+     *
+     * @param customer the customer placing the order
+     * @param cart     the customer's shopping cart
+     * @return a future which completes with the order once it is confirmed or has failed
+     */
+    public CompletableFuture<Order> submit(Customer customer, ShoppingCart cart) {
+        Order order = new Order(customer, cart);
+        return CompletableFuture.supplyAsync(() -> verifyFunds(order))
+                .thenApply(this::holdStock)
+                .thenComposeAsync(this::persist, persistenceExecutor)
+                .thenApply(this::confirm);
+    }
+
+    /**
+     * Makes a change to the products on the persistence thread, between the orders persisted before and after
+     * it, so the inventory store records the change and those orders in the order they were made.
+     *
+     * @param change the change, which records itself in the inventory store
+     * @param <T>    the type of the result of the change
+     * @return the result of the change
+     */
+    public <T> T applyInOrder(Supplier<T> change) {
+        return CompletableFuture.supplyAsync(change, persistenceExecutor).join();
+    }
+
+    /**
+     * Checkpoints the inventory store once every order persisted so far has been saved.
+     */
+    public void checkpoint() {
+        CompletableFuture.runAsync(() -> checkpoint(false), persistenceExecutor).join();
+    }
+
+    /**
+     * Checkpoints the inventory store if it is due, once every order persisted so far has been saved.
+     */
+    public void checkpointIfDue() {
+        CompletableFuture.runAsync(() -> checkpoint(true), persistenceExecutor).join();
+    }
+
+    /**
+     * Returns the latency recorders of the stages, followed by the recorder of whole orders.
+     *
+     * @return the latency recorders
+     */
+    public List<LatencyRecorder> getLatencies() {
+        return List.of(fundsLatency, stockLatency, persistLatency, confirmLatency, orderLatency);
+    }
+
+    private Order verifyFunds(Order order) {
+        long start = System.nanoTime();
+        // the cart keeps its total as items are added, so there is nothing to add up here
+        if (Money.toCents(order.customer.getFunds()) <= order.totalCents) {
+            order.status = MonashMerchantSystem.OrderStatus.INSUFFICIENT_FUNDS;
+        }
+        fundsLatency.record(System.nanoTime() - start);
+        return order;
+    }
+
+    // the holds are committed when the order is persisted
+    private Order holdStock(Order order) {
+        if (order.isFailed()) {
+            return order;
+        }
+        long start = System.nanoTime();
+        if (!order.cart.pinHolds()) {
+            order.status = MonashMerchantSystem.OrderStatus.OUT_OF_STOCK;
+        }
+        stockLatency.record(System.nanoTime() - start);
+        return order;
+    }
+
+    private CompletableFuture<Order> persist(Order order) {
+        if (order.isFailed()) {
+            return CompletableFuture.completedFuture(order);
+        }
+        long start = System.nanoTime();
+        // products are only edited and deleted on this thread, so they stay current until the order is recorded
+        if (!order.cart.refreshProducts(inventory.get())) {
+            order.cart.unpinHolds();
+            order.status = MonashMerchantSystem.OrderStatus.OUT_OF_STOCK;
+            persistLatency.record(System.nanoTime() - start);
+            return CompletableFuture.completedFuture(order);
+        }
+        String email = order.customer.getEmail();
+        // the check against the session's funds may be stale, so check the saved funds again here,
+        // where orders are persisted one at a time
+        Long fundsCents = unsavedFunds.get(email);
+        if (fundsCents == null) {
+            Customer saved;
+            try {
+                saved = customerStore.get().findCustomer(email);
+            } catch (RuntimeException e) {
+                System.err.println("Funds of " + email + " could not be read: " + e.getMessage());
+                order.cart.unpinHolds();
+                order.status = MonashMerchantSystem.OrderStatus.NOT_SAVED;
+                persistLatency.record(System.nanoTime() - start);
+                return CompletableFuture.completedFuture(order);
+            }
+            fundsCents = Money.toCents(saved == null ? order.customer.getFunds() : saved.getFunds());
+        }
+        if (fundsCents <= order.totalCents) {
+            order.cart.unpinHolds();
+            order.status = MonashMerchantSystem.OrderStatus.INSUFFICIENT_FUNDS;
+            order.customer.setFunds(Money.toDollars(fundsCents));
+            persistLatency.record(System.nanoTime() - start);
+            return CompletableFuture.completedFuture(order);
+        }
+        long remainingCents = fundsCents - order.totalCents;
+        order.remainingCents = remainingCents;
+        unsavedFunds.put(email, remainingCents);
+        // the customer store is only ready once the ledger has been recovered, so numbers are not reused
+        order.orderNumber = orderLedger.nextOrderNumber();
+        String ledgerEntry = OrderLedger.formatOrder(order.orderNumber, email, order.totalCents, order.items);
+        // taken off the stock on hand only as the order is recorded, with no checkpoint in between
+        order.cart.commitHolds();
+        CompletableFuture<Void> written;
+        try {
+            InventoryStore store = inventoryStore.get();
+            CompletableFuture<Void> recorded = store.recordOrder(email, remainingCents, order.items, ledgerEntry);
+            CompletableFuture<Void> ledgered = orderLedger.append(order.orderNumber, ledgerEntry);
+            written = store.keepsOrders() ? recorded : CompletableFuture.allOf(recorded, ledgered);
+        } catch (RuntimeException e) {
+            written = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Order> persisted = written.handleAsync((done, error) -> {
+            if (error != null) {
+                notPersisted(order, error);
+            } else {
+                saveFunds(email, remainingCents);
+            }
+            persistLatency.record(System.nanoTime() - start);
+            return order;
+        }, completionExecutor);
+        lastPersisted = persisted;
+        scheduleCheckpoint();
+        return persisted;
+    }
+
+    // gives back the stock and funds of an order which could not be made durable; the cart keeps its items,
+    // so the customer can try again
+    private void notPersisted(Order order, Throwable error) {
+        System.err.println("Order " + order.orderNumber + " could not be saved: " + error.getMessage());
+        for (CartItem item : order.items) {
+            item.getProduct().getStock().restock(item.getQuantity());
+        }
+        // a store which does not keep orders has taken the stock off its records in place, whether it or the
+        // ledger failed, so it is put back there too, or the store would lose stock the inventory still has
+        InventoryStore store = inventoryStore.get();
+        if (!store.keepsOrders()) {
+            try {
+                for (CartItem item : order.items) {
+                    store.recordQuantityChange(item.getProduct(), item.getQuantity());
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Stock of order " + order.orderNumber + " could not be put back in the store: "
+                        + e.getMessage());
+            }
+        }
+        unsavedFunds.remove(order.customer.getEmail(), order.remainingCents);
+        order.status = MonashMerchantSystem.OrderStatus.NOT_SAVED;
+    }
+
+    // the order is durable and its funds are recorded with it, so it stands even if the customer file cannot
+    // be written now; the funds then stay unsaved, so later orders are still checked against them
+    private void saveFunds(String email, long remainingCents) {
+        try {
+            customerStore.get().updateFunds(email, Money.toDollars(remainingCents));
+            unsavedFunds.remove(email, remainingCents);
+        } catch (RuntimeException e) {
+            System.err.println("Funds of " + email + " could not be saved: " + e.getMessage());
+        }
+    }
+
+    // runs on the persistence thread; a due checkpoint waits for the orders persisted so far without holding up
+    // the thread, then runs between two orders, checkpointing once however many orders find it due meanwhile
+    private void scheduleCheckpoint() {
+        if (checkpointScheduled || !inventoryStore.get().isCheckpointDue()) {
+            return;
+        }
+        checkpointScheduled = true;
+        lastPersisted.whenCompleteAsync((order, error) -> {
+            checkpointScheduled = false;
+            try {
+                checkpoint(true);
+            } catch (RuntimeException e) {
+                System.err.println("Inventory could not be checkpointed: " + e.getMessage());
+            }
+        }, persistenceExecutor);
+    }
+
+    // runs on the persistence thread
+    private void checkpoint(boolean onlyIfDue) {
+        InventoryStore store = inventoryStore.get();
+        if (onlyIfDue && !store.isCheckpointDue()) {
+            return;
+        }
+        // orders are saved in the order they are persisted, so waiting for the last waits for them all
+        lastPersisted.join();
+        customerStore.get().sync();
+        // the store's orders are dropped by the checkpoint, so the ledger must hold them first
+        orderLedger.flush();
+        store.checkpoint(inventory.get());
+    }
+
+    private Order confirm(Order order) {
+        long start = System.nanoTime();
+        if (!order.isFailed()) {
+            order.customer.setFunds(Money.toDollars(order.remainingCents));
+            order.cart.clear();
+            order.status = MonashMerchantSystem.OrderStatus.PLACED;
+        }
+        confirmLatency.record(System.nanoTime() - start);
+        orderLatency.record(System.nanoTime() - order.started);
+        ordersByStatus.get(order.status).increment();
+        return order;
+    }
+
+    private static ExecutorService singleThreadExecutor(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Map<MonashMerchantSystem.OrderStatus, LongAdder> countersByStatus() {
+        Map<MonashMerchantSystem.OrderStatus, LongAdder> counters =
+                new EnumMap<>(MonashMerchantSystem.OrderStatus.class);
+        for (MonashMerchantSystem.OrderStatus status : MonashMerchantSystem.OrderStatus.values()) {
+            counters.put(status, MetricsRegistry.getDefault().counter("orders." + status.name().toLowerCase(),
+                    "Checkouts with the outcome " + status + "."));
+        }
+        return counters;
+    }
+}
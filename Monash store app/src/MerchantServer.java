@@ -0,0 +1,275 @@
+import entities.CartItem;
+import entities.Customer;
+import entities.Inventory;
+import entities.Product;
+import entities.ShoppingCart;
+import entities.User;
+import util.LatencyRecorder;
+import util.MetricsRegistry;
+import util.Money;
+import util.StringValidation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Network front-end which lets many customers shop at once through one Monash Merchant System.
+ * Each connection is a session served on its own virtual thread, or on its own platform thread before Java 21,
+ * with its own logged-in customer and cart.
+ * <p>
+ * The protocol is line based. Each command is one line and each reply ends with a line reading "END":
+ * <pre>
+ * LOGIN &lt;email&gt; &lt;password&gt;
+ * BROWSE
+ * ADD &lt;product number&gt; &lt;quantity&gt;
+ * CART
+ * CHECKOUT
+ * LOGOUT
+ * METRICS
+ * QUIT
+ * </pre>
+ * ADD refers to a product by its number in the listing last sent by BROWSE, so the numbers a shopper sees
+ * keep their meaning while other sessions change the inventory. METRICS replies with every metric of the
+ * system in the Prometheus text format. The server only listens on the loopback address, so metrics are
+ * only available on the machine itself.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class MerchantServer {
+    public static final int DEFAULT_PORT = 5050;
+    private static final String END = "END";
+    private final MonashMerchantSystem monashMerchantSystem;
+    private final int port;
+    private final LatencyRecorder browseLatency = MetricsRegistry.getDefault().latency("browse");
+
+    /**
+     * State of one shopper's connection.
+     */
+    private static class Session {
+        private User user;
+        private Customer customer;
+        private ShoppingCart shoppingCart = new ShoppingCart();
+        // the listing last sent by BROWSE, which ADD's product numbers refer to
+        private List<Product> listing;
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param monashMerchantSystem the system the sessions shop in
+     * @param port                 the local port to listen on
+     */
+    public MerchantServer(MonashMerchantSystem monashMerchantSystem, int port) {
+        this.monashMerchantSystem = monashMerchantSystem;
+        this.port = port;
+    }
+
+    /**
+     * Listens on the local port and serves each connection on a new thread. Does not return.
+     *
+     * @throws IOException if the port cannot be opened
+     */
+    public void start() throws IOException {
+        ExecutorService sessions = sessionExecutor();
+        try (ServerSocket serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress())) {
+            System.out.println("Monash Merchant server listening on port " + serverSocket.getLocalPort());
+            while (true) {
+                Socket socket = serverSocket.accept();
+                sessions.submit(() -> serve(socket));
+            }
+        } finally {
+            sessions.shutdown();
+        }
+    }
+
+    /**
+     * Creates the executor sessions are served on: a virtual thread per session where the JDK has virtual
+     * threads, which it has from Java 21, and a platform thread per session otherwise. The virtual thread
+     * executor is looked up by reflection, so the server still compiles and runs on Java 17.
+     *
+     * @return the session executor
+     */
+    private static ExecutorService sessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Serves one connection until the client quits or disconnects.
+     *
+     * @param socket the client connection
+     */
+    private void serve(Socket socket) {
+        Session session = new Session();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8)))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] command = line.trim().split("\\s+");
+                if (command[0].equalsIgnoreCase("QUIT")) {
+                    break;
+                }
+                handle(session, command, out);
+                out.println(END);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // client disconnected
+        } finally {
+            // return anything left in the cart to stock
+            monashMerchantSystem.emptyCart(session.shoppingCart);
+        }
+    }
+
+    private void handle(Session session, String[] command, PrintWriter out) {
+        switch (command[0].toUpperCase()) {
+            case "LOGIN":
+                login(session, command, out);
+                break;
+            case "BROWSE":
+                browse(session, out);
+                break;
+            case "ADD":
+                add(session, command, out);
+                break;
+            case "CART":
+                cart(session, out);
+                break;
+            case "CHECKOUT":
+                checkout(session, out);
+                break;
+            case "METRICS":
+                out.print(MetricsRegistry.getDefault().toPrometheus());
+                break;
+            case "LOGOUT":
+                monashMerchantSystem.emptyCart(session.shoppingCart);
+                session.user = null;
+                session.customer = null;
+                out.println("OK Logged out");
+                break;
+            default:
+                out.println("ERR Unknown command");
+        }
+    }
+
+    private void login(Session session, String[] command, PrintWriter out) {
+        if (command.length != 3) {
+            out.println("ERR Usage: LOGIN <email> <password>");
+            return;
+        }
+        User user = monashMerchantSystem.login(command[1], command[2]);
+        Customer customer = user == null ? null : monashMerchantSystem.findCustomer(user.getEmail());
+        if (customer == null) {
+            out.println("ERR Invalid customer email or password");
+            return;
+        }
+        session.user = user;
+        session.customer = customer;
+        out.println("OK Logged in as " + user.getEmail());
+    }
+
+    private void browse(Session session, PrintWriter out) {
+        long start = System.nanoTime();
+        session.listing = monashMerchantSystem.getInventory().getProducts();
+        int prodNumber = 1;
+        for (Product product : session.listing) {
+            out.printf("%d,%s,%s,%s,%s,%.2f,%.2f,%d,%s%n", prodNumber, product.getProductName(),
+                    product.getBrand(), product.getCategory(), product.getSubCategory(), product.getPrice(),
+                    product.getMemberPrice(), product.getAvailableQuantity(), product.getDescription());
+            prodNumber++;
+        }
+        browseLatency.record(System.nanoTime() - start);
+    }
+
+    private void add(Session session, String[] command, PrintWriter out) {
+        if (session.customer == null) {
+            out.println("ERR Please login to continue");
+            return;
+        }
+        if (command.length != 3 || !StringValidation.isInteger(command[1])
+                || !StringValidation.isInteger(command[2])) {
+            out.println("ERR Usage: ADD <product number> <quantity>");
+            return;
+        }
+        Inventory inventory = monashMerchantSystem.getInventory();
+        // product numbers are positions in the listing the shopper browsed, not in whatever is listed now
+        List<Product> listing = session.listing == null ? inventory.getProducts() : session.listing;
+        int prodNumber = StringValidation.parseInt(command[1], 0);
+        int quantity = StringValidation.parseInt(command[2], 0);
+        if (prodNumber < 1 || prodNumber > listing.size()) {
+            out.println("ERR Product number must be between 1 and " + listing.size());
+            return;
+        }
+        // the listed product may since have been edited or removed
+        Product product = inventory.findProductByKey(listing.get(prodNumber - 1).getKey());
+        if (product == null) {
+            out.println("ERR Product is no longer available");
+        } else if (quantity < 1 || quantity > 10) {
+            out.println("ERR Quantity must be between 1 and 10");
+        } else if (!session.shoppingCart.canAdd(product)) {
+            out.println("ERR Only " + ShoppingCart.MAX_LINES + " products can be added to cart");
+        } else {
+            if (monashMerchantSystem.addToCart(session.shoppingCart, product, quantity)) {
+                out.println("OK Product added to cart");
+            } else {
+                out.println("ERR Only " + product.getAvailableQuantity() + " left in stock");
+            }
+        }
+    }
+
+    private void cart(Session session, PrintWriter out) {
+        StringBuilder line = new StringBuilder();
+        for (CartItem item : session.shoppingCart.getItems()) {
+            line.setLength(0);
+            line.append(item.getProduct().getProductName()).append(',').append(item.getQuantity()).append(',');
+            Money.appendCents(line, item.getUnitPriceCents()).append(',');
+            Money.appendCents(line, item.getTotalCents());
+            out.println(line);
+        }
+        line.setLength(0);
+        out.println(Money.appendCents(line.append("TOTAL "), session.shoppingCart.getTotalCents()));
+    }
+
+    private void checkout(Session session, PrintWriter out) {
+        if (session.customer == null) {
+            out.println("ERR Please login to continue");
+            return;
+        }
+        if (session.shoppingCart.isEmpty()) {
+            out.println("ERR Cart is empty");
+            return;
+        }
+        CheckoutPipeline.Order order = monashMerchantSystem.placeOrderAsync(session.customer,
+                session.shoppingCart).join();
+        MonashMerchantSystem.OrderStatus status = order.getStatus();
+        if (status == MonashMerchantSystem.OrderStatus.PLACED) {
+            out.printf("OK Order %d confirmed. Remaining funds %.2f%n", order.getOrderNumber(),
+                    session.customer.getFunds());
+        } else if (status == MonashMerchantSystem.OrderStatus.INSUFFICIENT_FUNDS) {
+            monashMerchantSystem.emptyCart(session.shoppingCart);
+            out.printf("ERR Insufficient funds %.2f. Cart has been emptied%n", session.customer.getFunds());
+        } else if (status == MonashMerchantSystem.OrderStatus.NOT_SAVED) {
+            out.println("ERR Order could not be saved and you have not been charged. Please try again");
+        } else {
+            out.println("ERR Some items are no longer in stock and have been removed from your cart");
+        }
+    }
+}
@@ -1,8 +1,24 @@
 import entities.*;
+import util.CatalogRenderer;
+import util.CredentialIndex;
+import util.CustomerStore;
+import util.FieldRule;
 import util.FileIO;
+import util.InventoryJournal;
+import util.InventoryStore;
+import util.LatencyRecorder;
+import util.MappedInventoryStore;
+import util.MetricsRegistry;
+import util.Money;
+import util.OrderLedger;
+import util.ProductImporter;
+import util.StartupSnapshot;
+import util.StringValidation;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Control class which handles the flow of the  Monash Merchant Application
@@ -11,30 +27,99 @@ import java.util.*;
  * @version 5/16/2023
  */
 public class MonashMerchantSystem {
+    /**
+     * Outcome of placing an order.
+     */
+    public enum OrderStatus {
+        PLACED,
+        INSUFFICIENT_FUNDS,
+        OUT_OF_STOCK,
+        NOT_SAVED
+    }
+
     private final String USER_FILENAME = "users.txt";
     private final String CUSTOMER_FILENAME = "customers.txt";
     private final String INVENTORY_FILENAME = "inventory.txt";
+    private final String INVENTORY_JOURNAL_FILENAME = "inventory.journal";
+    private final String INVENTORY_RECORDS_FILENAME = "inventory.dat";
+    private final String INVENTORY_STRINGS_FILENAME = "inventory.strings";
+    private final String ORDER_LEDGER_DIRECTORY = "orders";
+    private final String STARTUP_SNAPSHOT_FILENAME = "startup.snapshot";
+    private final String METRICS_FILENAME = "metrics.prom";
+    // set to "mapped" to keep the inventory in memory-mapped binary files instead of inventory.txt
+    private final String INVENTORY_STORE_PROPERTY = "monash.inventory.store";
+    private final int LOW_STOCK_THRESHOLD = 5;
+    private final int SEARCH_RESULT_LIMIT = 20;
+    private final int IMPORT_REJECTIONS_SHOWN = 10;
     private Inventory inventory;
     private User currentUser;
     private Customer customer;
-    private Inventory inventory_copy;
     private ShoppingCart shoppingCart;
+    private boolean inventoryLoaded;
+    private InventoryStore inventoryStore;
+    private StartupSnapshot startupSnapshot;
+    private final CompletableFuture<Void> inventoryReady;
+    private final CompletableFuture<CustomerStore> customerStoreReady;
+    private CredentialIndex credentialIndex;
+    private OrderLedger orderLedger;
+    private CheckoutPipeline checkoutPipeline;
+    private final StringBuilder checkoutTable = new StringBuilder();
+    private final CatalogRenderer catalogRenderer = new CatalogRenderer(System.out, CatalogRenderer.DEFAULT_PAGE_SIZE);
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final LatencyRecorder loginLatency = metrics.latency("login");
+    private final LatencyRecorder searchLatency = metrics.latency("search");
+    private final LatencyRecorder cartAddLatency = metrics.latency("cart.add");
+    private final LongAdder loginFailures = metrics.counter("login.failures",
+            "Login attempts with an unknown email or a wrong password.");
+    private final LongAdder cartRejections = metrics.counter("cart.rejections",
+            "Products not added to a cart for lack of stock.");
 
     /**
      * Default constructor.
      */
     public MonashMerchantSystem() {
-        FileIO fileIO = new FileIO();
-        this.inventory = fileIO.readInventoryFile();
         shoppingCart = new ShoppingCart();
         //inventory = new Inventory();
-        //use to checkout to update inventory file
-        //inventory_copy = new Inventory();
         //customer = new Customer();
-        initializeInventory();
         createMockUserDate();
-        createMockCustomerData();
-        createMockProductsData();
+        if (!usesMappedStore()) {
+            startupSnapshot = StartupSnapshot.open(STARTUP_SNAPSHOT_FILENAME, INVENTORY_FILENAME,
+                    INVENTORY_JOURNAL_FILENAME, CUSTOMER_FILENAME);
+        }
+        if (startupSnapshot == null) {
+            createMockCustomerData();
+            createMockProductsData();
+        }
+        orderLedger = new OrderLedger(ORDER_LEDGER_DIRECTORY);
+        // the inventory and the customers load concurrently in the background and are waited for on first use
+        inventoryReady = CompletableFuture.runAsync(this::reloadInventory);
+        customerStoreReady = CompletableFuture.supplyAsync(this::openCustomerStore)
+                .thenCombine(inventoryReady, (customerStore, loaded) -> {
+                    // orders recorded just before a crash may not have reached the customer file or the ledger
+                    inventoryStore.getRecordedFunds().forEach(customerStore::updateFunds);
+                    orderLedger.recover(inventoryStore.getRecordedOrders());
+                    if (startupSnapshot != null) {
+                        startupSnapshot = null;
+                        StartupSnapshot.delete(STARTUP_SNAPSHOT_FILENAME);
+                    }
+                    return customerStore;
+                });
+        credentialIndex = new CredentialIndex(USER_FILENAME);
+        checkoutPipeline = new CheckoutPipeline(() -> inventoryStore, this::getInventory,
+                this::getCustomerStore, orderLedger);
+    }
+
+    /**
+     * Saves every change made so far and writes the startup snapshot, so that the next start does not have
+     * to parse the inventory and customers files. Called once, when the application quits.
+     */
+    public void shutdown() {
+        checkoutPipeline.checkpoint();
+        if (!usesMappedStore()) {
+            StartupSnapshot.write(STARTUP_SNAPSHOT_FILENAME, getInventory().getProducts(), getCustomerStore(),
+                    INVENTORY_FILENAME, INVENTORY_JOURNAL_FILENAME, CUSTOMER_FILENAME);
+        }
+        getCustomerStore().close();
     }
 
     /**
@@ -140,49 +225,41 @@ public class MonashMerchantSystem {
         Scanner console = new Scanner(System.in);
         boolean authenticated = false;
         User validUser = null;
-        try {
-            ArrayList<Customer> customerList = readCustomer(CUSTOMER_FILENAME);
-            ArrayList<User> userList = readUser(USER_FILENAME);
-            boolean loginFlag = true;
-            while (loginFlag) {
-                System.out.print("Enter username: ");
-                String username = console.nextLine();
-                for (User user : userList) {
-                    if (user.getEmail().equals(username)) {
-                        validUser = user;
-                        break;
-                    }
-                }
-                if (validUser != null) {
+        boolean loginFlag = true;
+        while (loginFlag) {
+            System.out.print("Enter username: ");
+            String username = console.nextLine();
+            // the time spent waiting for input is not part of the login latency
+            long start = System.nanoTime();
+            validUser = credentialIndex.findUser(username);
+            long elapsed = System.nanoTime() - start;
+            if (validUser != null) {
+                System.out.print("Enter password: ");
+                String password = console.nextLine();
+                while (!password.equals(validUser.getPassword())) {
+                    loginFailures.increment();
+                    System.out.println("Invalid password, please try again");
                     System.out.print("Enter password: ");
-                    String password = console.nextLine();
-                    while (!password.equals(validUser.getPassword())) {
-                        System.out.println("Invalid password, please try again");
-                        System.out.print("Enter password: ");
-                        password = console.nextLine();
-                    }
-                    if (password.equals(validUser.getPassword())) {
-                        if (username.endsWith("@student.monash.edu")) {
-                            System.out.println("Successfully logged in as a Customer");
-                            for (Customer customer1 : customerList) {
-                                if (customer1.getEmail().equals(username)) {
-                                    this.customer = customer1;
-                                    break;
-                                }
-                            }
-                            authenticated = true;
-                        } else if (username.endsWith("@merchant.monash.edu")) {
-                            System.out.println("Successfully logged in as an Admin");
-                            authenticated = true;
-                        }
+                    password = console.nextLine();
+                }
+                if (password.equals(validUser.getPassword())) {
+                    if (username.endsWith("@student.monash.edu")) {
+                        System.out.println("Successfully logged in as a Customer");
+                        start = System.nanoTime();
+                        this.customer = getCustomerStore().findCustomer(username);
+                        elapsed += System.nanoTime() - start;
+                        authenticated = true;
+                    } else if (username.endsWith("@merchant.monash.edu")) {
+                        System.out.println("Successfully logged in as an Admin");
+                        authenticated = true;
                     }
-                    loginFlag = false;
-                } else {
-                    System.out.println("Invalid username, please try again!");
                 }
+                loginLatency.record(elapsed);
+                loginFlag = false;
+            } else {
+                loginFailures.increment();
+                System.out.println("Invalid username, please try again!");
             }
-        } catch (FileNotFoundException e) {
-            System.out.println("users.txt file not found - " + e.getMessage());
         }
         this.currentUser = validUser;
         return validUser;
@@ -190,88 +267,36 @@ public class MonashMerchantSystem {
     }
 
     /**
-     * Adds a product to the inventory
+     * Adds a product to the inventory. A product with the same name and brand as one already in the
+     * inventory is refused, so the inventory store can name each product by its key.
      */
     public void addProduct() {
+        initializeInventory();
         Scanner myObj = new Scanner(System.in);
-        String productName;
-        do {
-            System.out.println("Enter product name:");
-            productName = myObj.nextLine();
-            if (!productName.matches("[a-zA-Z0-9\\s]+")) {
-                System.out.println("Product name must contain only letters, numbers, and spaces.");
-            }
-        } while (!productName.matches("[a-zA-Z0-9\\s]+"));
-        String brand;
-        do {
-            System.out.println("Enter brand name:");
-            brand = myObj.nextLine();
-            if (!brand.matches("[a-zA-Z0-9\\s]+")) {
-                System.out.println("Brand name must contain only letters, numbers, and spaces.");
-            }
-        } while (!brand.matches("[a-zA-Z0-9\\s]+"));
-        String category;
-        do {
-            System.out.println("Enter category:");
-            category = myObj.nextLine();
-            if (!category.matches("[a-zA-Z]+")) {
-                System.out.println("Category must contain only letters.");
-            }
-        } while (!category.matches("[a-zA-Z]+"));
-        String subCategory;
-        do {
-            System.out.println("Enter subcategory name:");
-            subCategory = myObj.nextLine();
-            if (!subCategory.matches("[a-zA-Z]+")) {
-                System.out.println("Subcategory must contain only letters.");
-            }
-        } while (!subCategory.matches("[a-zA-Z]+"));
-        double price;
-        do {
-            System.out.println("Enter price:");
-            while (!myObj.hasNextDouble()) {
-                System.out.println("Price must be a valid number.");
-                myObj.next();
-            }
-            price = myObj.nextDouble();
-        } while (price <= 0);
-        double memberPrice;
-        do {
-            System.out.println("Enter member price:");
-            while (!myObj.hasNextDouble()) {
-                System.out.println("Member price must be a valid number.");
-                myObj.next();
-            }
-            memberPrice = myObj.nextDouble();
-        } while (memberPrice <= 0);
-        int quantity;
-        do {
-            System.out.println("Enter quantity:");
-            while (!myObj.hasNextInt()) {
-                System.out.println("Quantity must be a positive integer.");
-                myObj.next();
-            }
-            quantity = myObj.nextInt();
-        } while (quantity <= 0);
-        String description;
-        do {
-            System.out.println("Enter description:");
-            description = myObj.nextLine();
-            if (!description.matches("[a-zA-Z0-9\\s]+")) {
-                System.out.println("Enter a valid description");
-            }
-        } while (!description.matches("[a-zA-Z0-9\\s]+"));
+        String productName = readField(myObj, "Enter product name:", StringValidation.PRODUCT_NAME);
+        String brand = readField(myObj, "Enter brand name:", StringValidation.BRAND);
+        if (inventory.findProduct(productName, brand) != null) {
+            System.out.println("A product named " + productName + " by " + brand + " already exists.");
+            return;
+        }
+        String category = readField(myObj, "Enter category:", StringValidation.CATEGORY);
+        String subCategory = readField(myObj, "Enter subcategory name:", StringValidation.SUB_CATEGORY);
+        double price = StringValidation.parseDouble(readField(myObj, "Enter price:", StringValidation.PRICE), 0);
+        double memberPrice = StringValidation.parseDouble(readField(myObj, "Enter member price:",
+                StringValidation.MEMBER_PRICE), 0);
+        int quantity = StringValidation.parseInt(readField(myObj, "Enter quantity:", StringValidation.QUANTITY), 0);
+        String description = readField(myObj, "Enter description:", StringValidation.DESCRIPTION);
         Product product = new Product(productName, brand, category, subCategory, price, memberPrice, quantity,
                 description);
         product.display();
-        String productDetails = productName + ", " + brand + ", " + category + ", " + subCategory + ", " + price + "," +
-                " " + memberPrice + ", " + quantity + ", " + description;
         System.out.println("Save Product to list: Y [or] N ");
         String save = myObj.nextLine();
         if (Objects.equals(save, "Y")) {
             System.out.println("Saving to System.....");
-            FileIO fileIO = new FileIO();
-            fileIO.writeFile(INVENTORY_FILENAME, productDetails);
+            inventory.addProduct(product);
+            inventoryStore.recordAdd(product);
+            checkoutPipeline.checkpointIfDue();
+            System.out.println("Saved.");
         } else {
             System.out.println("Saving to system was cancelled");
         }
@@ -279,31 +304,93 @@ public class MonashMerchantSystem {
     }
 
 
+    /**
+     * Asks for a field until the value entered follows the field's rule, explaining the rule each time it
+     * does not.
+     *
+     * @param scanner the scanner to read from
+     * @param prompt  the prompt for the field
+     * @param rule    the rule the value must follow
+     * @return the value entered, without surrounding spaces
+     */
+    private String readField(Scanner scanner, String prompt, FieldRule rule) {
+        while (true) {
+            System.out.println(prompt);
+            String value = scanner.nextLine().trim();
+            String error = rule.check(value);
+            if (error == null) {
+                return value;
+            }
+            System.out.println(error + ".");
+        }
+    }
+
+    /**
+     * Imports products from a file chosen by the admin. Every valid product which is not already in the
+     * inventory is added as one change and saved in one write, and the rows imported per second and the
+     * rows rejected are reported.
+     */
+    public void importProducts() {
+        initializeInventory();
+        Scanner scanner = new Scanner(System.in);
+        System.out.println("Enter the name of the file to import products from:");
+        String fileName = scanner.nextLine().trim();
+        if (!new File(fileName).isFile()) {
+            System.out.println("File " + fileName + " not found.");
+            return;
+        }
+        System.out.println("Importing products.....");
+        long start = System.nanoTime();
+        ProductImporter.Result result = new ProductImporter().importFile(fileName, inventory);
+        List<Product> accepted = result.getAccepted();
+        inventory.addProducts(accepted);
+        inventoryStore.recordAdds(accepted);
+        checkoutPipeline.checkpointIfDue();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Imported %d of %d rows in %.3f seconds (%.0f rows/s).%n", accepted.size(),
+                result.getRows(), seconds, result.getRows() / Math.max(seconds, 1e-9));
+        List<String> rejections = result.getRejections();
+        if (!rejections.isEmpty()) {
+            System.out.println(rejections.size() + " rows rejected:");
+            rejections.stream().limit(IMPORT_REJECTIONS_SHOWN).forEach(System.out::println);
+            if (rejections.size() > IMPORT_REJECTIONS_SHOWN) {
+                System.out.println("... and " + (rejections.size() - IMPORT_REJECTIONS_SHOWN) + " more");
+            }
+        }
+    }
+
     /**
      * Deletes a product from the inventory
      */
     public void deleteProduct() {
+        initializeInventory();
         Scanner scanner = new Scanner(System.in);
-        FileIO fileIO = new FileIO();
-        ArrayList<Product> products = inventory.getProducts();
+        CatalogRenderer.Cursor cursor = catalogRenderer.cursor(inventory, 1, true);
 
-        browseProducts();
-        System.out.println("Enter the product number to be deleted:");
-        while (!scanner.hasNextInt()) {
-            System.out.println("Product number must be a positive integer between 1 and " + products.size() + ".");
-            scanner.next();
-        }
-        int prodNumber = scanner.nextInt();
+        cursor.print();
+        int listed = cursor.getPrinted().size();
+        int prodNumber = readProductNumber(scanner, cursor, 1, listed,
+                "Enter the product number to be deleted:",
+                "Product number must be a positive integer between 1 and " + listed + ".");
 
         scanner.nextLine();
-        System.out.println(products.get(prodNumber - 1));
+        Product product = cursor.getPrinted().get(prodNumber - 1);
+        System.out.println(product);
         System.out.print("Are you sure you want to delete this product? Y [or] N");
         String save = scanner.nextLine();
         if (save.equals("Y") || save.equals("y")) {
             System.out.println("Deleting product.....");
-            products.remove(prodNumber - 1);
-            inventory.setProducts(products);
-            updateInventoryFile();
+            // in order with orders, so none is recorded after the product it names is deleted
+            boolean deleted = checkoutPipeline.applyInOrder(() -> {
+                if (!inventory.removeProduct(product)) {
+                    return false;
+                }
+                inventoryStore.recordDelete(product);
+                return true;
+            });
+            if (deleted) {
+                checkoutPipeline.checkpointIfDue();
+            }
         } else {
             System.out.println("Product deletion cancelled");
         }
@@ -311,52 +398,295 @@ public class MonashMerchantSystem {
     }
 
     /**
-     * Initializes inventory and inventory_copy from inventory.txt
+     * Initializes the inventory from inventory.txt the first time it is called.
+     * Later calls keep the in-memory inventory, which every change made through the system is applied to.
      */
     public void initializeInventory() {
+        inventoryReady.join();
+        if (!inventoryLoaded) {
+            reloadInventory();
+        }
+    }
 
-        this.inventory = new Inventory();
-        this.inventory_copy = new Inventory();
-        FileIO fileIO = new FileIO();
-        ArrayList<String> products = fileIO.readFile(INVENTORY_FILENAME);
-        Collections.sort(products, new Comparator<String>() {
-            @Override
-            public int compare(String s1, String s2) {
-                // Split each string by comma and extract the integer value
-                int quantity1 = Integer.parseInt(s1.split(",")[6].trim());
-                int quantity2 = Integer.parseInt(s2.split(",")[6].trim());
-                // Compare the integer values
-                return Integer.compare(quantity2, quantity1);
-            }
-        });
-        for (String product : products) {
-            String[] productValues = product.split(",");
-            Product product1 = new Product(productValues[0].trim(), productValues[1].trim(), productValues[2].trim(),
-                    productValues[3].trim(), Double.parseDouble(productValues[4].trim()),
-                    Double.parseDouble(productValues[5].trim()), Integer.parseInt(productValues[6].trim()),
-                    productValues[7].trim());
-            inventory.addProduct(product1);
-            inventory_copy.addProduct(product1);
+    /**
+     * Reloads the inventory from the inventory store, listed by quantity in descending order.
+     * Each record is parsed once and the products are sorted on their parsed quantity; as sales change the
+     * quantities, the inventory sorts its listing again when it is read. The first load reads the products
+     * from the startup snapshot instead, if it is current.
+     */
+    public void reloadInventory() {
+        if (inventoryStore == null) {
+            inventoryStore = openInventoryStore();
+        }
+        Inventory loaded;
+        if (startupSnapshot != null && !inventoryLoaded) {
+            // the journal was emptied by the checkpoint before the snapshot was written
+            loaded = new Inventory();
+            loaded.setProducts(startupSnapshot.readProducts());
+        } else {
+            loaded = inventoryStore.load();
+        }
+        if (inventory != null) {
+            inventory.release();
+        }
+        this.inventory = new Inventory(ProductSortOrder.QUANTITY_DESCENDING);
+        inventory.setProducts(loaded.getProducts());
+        inventoryLoaded = true;
+    }
 
+    /**
+     * Opens the inventory store selected by the monash.inventory.store system property. The default store is
+     * inventory.txt with its journal; the first time the mapped store is used, the inventory is copied into it.
+     *
+     * @return the opened InventoryStore
+     */
+    private InventoryStore openInventoryStore() {
+        InventoryJournal journal = new InventoryJournal(INVENTORY_JOURNAL_FILENAME, INVENTORY_FILENAME);
+        if (!usesMappedStore()) {
+            return journal;
         }
+        MappedInventoryStore mappedStore = new MappedInventoryStore(INVENTORY_RECORDS_FILENAME,
+                INVENTORY_STRINGS_FILENAME);
+        if (mappedStore.isEmpty()) {
+            mappedStore.importProducts(journal.load().getProducts());
+        }
+        journal.close();
+        return mappedStore;
+    }
+
+    /**
+     * Checks whether the monash.inventory.store system property selects the mapped inventory store.
+     *
+     * @return true if the inventory is kept in memory-mapped binary files
+     */
+    private boolean usesMappedStore() {
+        return "mapped".equals(System.getProperty(INVENTORY_STORE_PROPERTY));
+    }
+
+    /**
+     * Opens the customer store, restoring its index from the startup snapshot if it is current.
+     *
+     * @return the opened CustomerStore
+     */
+    private CustomerStore openCustomerStore() {
+        if (startupSnapshot != null) {
+            return startupSnapshot.readCustomerStore(CUSTOMER_FILENAME);
+        }
+        return new CustomerStore(CUSTOMER_FILENAME);
+    }
+
+    /**
+     * Returns the customer store, waiting for it to finish loading if needed.
+     *
+     * @return the CustomerStore
+     */
+    private CustomerStore getCustomerStore() {
+        return customerStoreReady.join();
+    }
 
+    /**
+     * Replaces a product with its edited copy and records the edit in the inventory store. Shoppers see the
+     * product as it was until the edited copy replaces it, and a quantity set on the copy is applied to the
+     * product's stock only once it has, though never below the stock held in carts. An edit giving the
+     * product the name and brand of another product is not saved. The edit is made in order with orders, so
+     * orders before it are recorded under the product's old key and orders after it under the new one.
+     *
+     * @param product the product as it was before it was edited
+     * @param edited  the edited copy of the product
+     * @return true if the edit was saved, false if another product has the edited name and brand
+     */
+    public boolean editProduct(Product product, Product edited) {
+        Product published = edited.publish();
+        boolean saved = checkoutPipeline.applyInOrder(() -> {
+            if (!inventory.replaceProduct(product, published)) {
+                return false;
+            }
+            if (edited.isQuantityEdited()) {
+                int quantity = published.getStock().setOnHand(edited.getQuantity());
+                if (quantity != edited.getQuantity()) {
+                    System.out.println(quantity + " units are held in carts, so the quantity was set to "
+                            + quantity + ".");
+                }
+            }
+            inventoryStore.recordEdit(product.getKey(), published);
+            return true;
+        });
+        if (saved) {
+            checkoutPipeline.checkpointIfDue();
+        }
+        return saved;
     }
 
     /**
      * Displays the available products
      */
     public void browseProducts() {
+        pageThrough(catalogRenderer.cursor(inventory, 1, true));
+    }
+
+    /**
+     * Asks the customer for search words and displays the best matching products
+     */
+    public void searchProducts() {
+        Scanner scanner = new Scanner(System.in);
+        initializeInventory();
+        System.out.println("Enter words to search for in product names, brands and descriptions:");
+        String query = scanner.nextLine().trim();
+        if (query.isEmpty()) {
+            System.out.println("Please enter at least one word.");
+            return;
+        }
+        long start = System.nanoTime();
+        List<Product> results = inventory.search(query, SEARCH_RESULT_LIMIT);
+        searchLatency.record(System.nanoTime() - start);
+        if (results.isEmpty()) {
+            System.out.println("No products match \"" + query + "\".");
+            return;
+        }
+        pageThrough(catalogRenderer.cursor(results, 1, true));
+    }
+
+    /**
+     * Lets the customer narrow down the catalog by category, sub-category, brand and stock, showing how many
+     * products each choice leaves before it is made
+     */
+    public void browseByFilter() {
+        Scanner scanner = new Scanner(System.in);
+        initializeInventory();
+        ProductFilter filter = ProductFilter.ALL;
+        while (true) {
+            System.out.println(filter + " - " + inventory.countProducts(filter) + " products");
+            List<ProductFilter> choices = new ArrayList<>();
+            for (ProductFacet facet : ProductFacet.values()) {
+                if (facet == ProductFacet.CATEGORY && filter.getCategory() != null
+                        || facet == ProductFacet.SUB_CATEGORY && (filter.getCategory() == null
+                        || filter.getSubCategory() != null)
+                        || facet == ProductFacet.BRAND && filter.getBrand() != null) {
+                    continue;
+                }
+                Map<String, Integer> counts = inventory.getFacetCounts(filter, facet);
+                if (!counts.isEmpty()) {
+                    System.out.println(facet.getLabel() + ":");
+                }
+                for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                    choices.add(filter.with(facet, count.getKey()));
+                    System.out.println(choices.size() + ". " + count.getKey() + " (" + count.getValue() + ")");
+                }
+            }
+            System.out.println("s. Show products");
+            System.out.println("i. " + (filter.isInStockOnly() ? "Include products out of stock"
+                    : "Only products in stock"));
+            System.out.println("c. Clear filters");
+            System.out.println("b. Back");
+            String choice = scanner.nextLine().trim();
+            int number = StringValidation.parseInt(choice, 0);
+            if (choice.equals("b")) {
+                break;
+            } else if (choice.equals("s")) {
+                pageThrough(catalogRenderer.cursor(inventory.getProducts(filter), 1, true));
+            } else if (choice.equals("i")) {
+                filter = filter.withInStockOnly(!filter.isInStockOnly());
+            } else if (choice.equals("c")) {
+                filter = ProductFilter.ALL;
+            } else if (number >= 1 && number <= choices.size()) {
+                filter = choices.get(number - 1);
+            } else {
+                System.out.println("Invalid choice. Please try again.");
+            }
+        }
+    }
 
-        System.out.printf("%-4s\t%-20s\t%-15s\t%-15s\t%-15s\t%-5s\t%-5s\t%s\t%s%n", "No.", "Name", "Brand", "Category"
-                , "SubCategory", "Price", "Member Price", "Quantity", "Description");
-        int prodNumber = 1;
-        for (Product product : inventory.getProducts()) {
-            System.out.printf("%-4d\t%-20s\t%-15s\t%-15s\t%-15s\t%.2f\t%-15.2f\t%-15d\t%s%n", prodNumber,
-                    product.getProductName(), product.getBrand(), product.getCategory(), product.getSubCategory(),
-                    product.getPrice(), product.getMemberPrice(), product.getQuantity(), product.getDescription());
-            prodNumber++;
+    /**
+     * Displays products a page at a time, letting the user move between pages until they go back
+     *
+     * @param cursor the cursor over the products to display
+     */
+    private void pageThrough(CatalogRenderer.Cursor cursor) {
+        Scanner scanner = new Scanner(System.in);
+        cursor.print();
+        while (cursor.getPageCount() > 1) {
+            System.out.println("Enter n or p to change page, or b to go back:");
+            String choice = scanner.nextLine().trim();
+            if (choice.equalsIgnoreCase("n") && cursor.next() || choice.equalsIgnoreCase("p") && cursor.previous()) {
+                cursor.print();
+            } else if (choice.equalsIgnoreCase("b")) {
+                break;
+            } else {
+                System.out.println("Invalid choice. Please try again.");
+            }
         }
+    }
 
+    /**
+     * Reads a product number within a range, letting the user change the page of products shown meanwhile
+     *
+     * @param scanner the scanner to read from
+     * @param cursor  the cursor over the products shown
+     * @param min     the lowest number accepted
+     * @param max     the highest number accepted
+     * @param prompt  the message asking for the number
+     * @param error   the message shown when the input is not a number
+     * @return the number entered
+     */
+    private int readProductNumber(Scanner scanner, CatalogRenderer.Cursor cursor, int min, int max, String prompt,
+                                  String error) {
+        int prodNumber;
+        do {
+            System.out.println(prompt);
+            while (!scanner.hasNextInt()) {
+                String token = scanner.next();
+                if (token.equalsIgnoreCase("n") && cursor.next() || token.equalsIgnoreCase("p") && cursor.previous()) {
+                    cursor.print();
+                    System.out.println(prompt);
+                } else {
+                    System.out.println(error);
+                }
+            }
+            prodNumber = scanner.nextInt();
+        } while (!(prodNumber >= min && prodNumber <= max));
+        return prodNumber;
+    }
+
+    /**
+     * Prints the total value of the stock on hand, the stock of each category and the products which are
+     * low on stock.
+     */
+    public void printStockReport() {
+        initializeInventory();
+        StringBuilder report = new StringBuilder();
+        report.append("Total stock value: ");
+        Money.appendCents(report, inventory.getStockValueCents()).append(System.lineSeparator());
+        report.append(System.lineSeparator()).append("Stock by category:").append(System.lineSeparator());
+        inventory.getStockByCategory().forEach((category, quantity) -> report.append(String.format("%-20s%d%n",
+                category, quantity)));
+        report.append(System.lineSeparator()).append("Low stock (").append(LOW_STOCK_THRESHOLD)
+                .append(" or fewer):").append(System.lineSeparator());
+        List<Product> lowStock = inventory.getLowStockProducts(LOW_STOCK_THRESHOLD);
+        if (lowStock.isEmpty()) {
+            report.append("None").append(System.lineSeparator());
+        }
+        for (Product product : lowStock) {
+            report.append(String.format("%-20s%-15s%d%n", product.getProductName(), product.getBrand(),
+                    product.getQuantity()));
+        }
+        System.out.print(report);
+    }
+
+    /**
+     * Prints the count, median and 99th percentile latency of each operation recorded so far, and writes
+     * every metric to the metrics file in the Prometheus text format for a collector to read.
+     */
+    public void printMetrics() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-20s%10s%12s%12s%n", "Operation", "Count", "p50 (ms)", "p99 (ms)"));
+        for (LatencyRecorder recorder : metrics.getLatencies().values()) {
+            report.append(String.format("%-20s%10d%12.3f%12.3f%n", recorder.getName(), recorder.getCount(),
+                    recorder.getPercentile(50) / 1e6, recorder.getPercentile(99) / 1e6));
+        }
+        metrics.writePrometheus(METRICS_FILENAME);
+        report.append(System.lineSeparator()).append("All metrics written to ").append(METRICS_FILENAME)
+                .append(System.lineSeparator());
+        System.out.print(report);
     }
 
     /**
@@ -368,79 +698,194 @@ public class MonashMerchantSystem {
         int prodNumber;
         int quantity;
         initializeInventory();
+        CatalogRenderer.Cursor cursor = catalogRenderer.cursor(inventory, 1, true);
         while (true) {
-            browseProducts();
+            cursor.print();
+            // choices refer to the listing printed, even if the inventory changes while the shopper chooses
+            List<Product> listed = cursor.getPrinted();
             System.out.println("0. Go to main menu");
-            System.out.println((inventory.getProducts().size() + 1) + ". Proceed to checkout");
-            do {
-                System.out.println("Enter the product number to add to cart:");
-                while (!scanner.hasNextInt()) {
-                    System.out.println("Input must be a positive integer between 0 and " + inventory.getProducts().size() + ".");
-                    scanner.next();
-                }
-                prodNumber = scanner.nextInt();
-            } while (!(prodNumber >= 0 && prodNumber <= (inventory.getProducts().size() + 1)));
+            System.out.println((listed.size() + 1) + ". Proceed to checkout");
+            prodNumber = readProductNumber(scanner, cursor, 0, listed.size() + 1,
+                    "Enter the product number to add to cart:",
+                    "Input must be a positive integer between 0 and " + listed.size() + ".");
             scanner.nextLine();
+            listed = cursor.getPrinted();
             if (prodNumber == 0) {
                 System.out.println("Redirecting to main menu...");   // needs to work properly
                 break;
-            } else if (prodNumber == (inventory.getProducts().size() + 1)) {
-                System.out.println("Redirecting to checkout...");  //if same item is added twice it needs to add the qty
+            } else if (prodNumber == (listed.size() + 1)) {
+                System.out.println("Redirecting to checkout...");
                 checkout();
                 break;
 
-            } else if (shoppingCart.getItems().size() <= 20) {
+            } else if (shoppingCart.canAdd(listed.get(prodNumber - 1))) {
                 do {
                     System.out.println("Enter the quantity:(Cannot exceed 10)");
                     while (!scanner.hasNextInt()) {
-                        System.out.println("Quantity must be a positive integer between 1 and " + inventory.getProducts().get(prodNumber - 1).getQuantity() + ".");
+                        System.out.println("Quantity must be a positive integer between 1 and 10.");
                         scanner.next();
                     }
                     quantity = scanner.nextInt();
-                } while (!(quantity >= 1 && prodNumber <= inventory.getProducts().get(prodNumber - 1).getQuantity() && quantity <= 10));
+                } while (!(quantity >= 1 && quantity <= 10));
                 scanner.nextLine();
-                int initialQuantity = inventory.getProducts().get(prodNumber - 1).getQuantity();
+                Product product = listed.get(prodNumber - 1);
                 //checking if there's enough stock
-                if (initialQuantity >= quantity) {
-                    shoppingCart.addItem(inventory.getProducts().get(prodNumber - 1), quantity);
-                    //deducting the quantity from inventory copy
-                    inventory_copy.getProducts().get(prodNumber - 1).setQuantity(initialQuantity - quantity);
+                if (addToCart(shoppingCart, product, quantity)) {
                     System.out.println("Product added to cart!!");
-                    //for test purposes need to be removed.
-                    System.out.println(inventory_copy.getProducts().get(prodNumber - 1).getQuantity());
                 } else {
-                    System.out.println("Only " + initialQuantity + " left in stock");
+                    System.out.println("Only " + product.getAvailableQuantity() + " left in stock");
                 }
             } else {
-                System.out.println("Only 20 items can be added to cart.");
+                System.out.println("Only " + ShoppingCart.MAX_LINES + " products can be added to cart.");
             }
         }
 
     }
 
     /**
-     * Updates the funds of a customer in the customer file.
+     * Adds a product to a shopping cart and reserves the quantity, if enough stock is available.
+     * Reserving does not lock, so any number of shoppers can add to their carts at once. The stock is
+     * held for the cart until the order is placed, the cart is emptied or the hold expires.
+     *
+     * @param cart     the shopping cart to add to
+     * @param product  the product to add
+     * @param quantity the quantity to add
+     * @return true if the product was added, false if there is not enough stock
+     */
+    public boolean addToCart(ShoppingCart cart, Product product, int quantity) {
+        long start = System.nanoTime();
+        boolean added = cart.addItem(product, quantity);
+        cartAddLatency.record(System.nanoTime() - start);
+        if (!added) {
+            cartRejections.increment();
+        }
+        return added;
+    }
+
+    /**
+     * Empties a shopping cart, releasing its reserved stock.
+     *
+     * @param cart the shopping cart to empty
+     */
+    public void emptyCart(ShoppingCart cart) {
+        cart.clear();
+    }
+
+    /**
+     * Places an order for the items in a shopping cart, if the customer has enough funds and every item
+     * is still held or can be held again. The stock change and the customer's new funds are saved and the
+     * cart is emptied.
+     *
+     * @param customer the customer placing the order
+     * @param cart     the customer's shopping cart
+     * @return the outcome of the order
+     */
+    public OrderStatus placeOrder(Customer customer, ShoppingCart cart) {
+        return placeOrderAsync(customer, cart).join().getStatus();
+    }
+
+    /**
+     * Starts placing an order for the items in a shopping cart without waiting for it.
+     *
+     * @param customer the customer placing the order
+     * @param cart     the customer's shopping cart
+     * @return a future which completes with the order once it is confirmed or has failed
+     */
+    public CompletableFuture<CheckoutPipeline.Order> placeOrderAsync(Customer customer, ShoppingCart cart) {
+        return checkoutPipeline.submit(customer, cart);
+    }
+
+    /**
+     * Finds a placed order in the order ledger.
+     *
+     * @param orderNumber the number of the order
+     * @return the OrderRecord, or null if there is no such order
+     */
+    public OrderRecord findOrder(long orderNumber) {
+        return orderLedger.findOrder(orderNumber);
+    }
+
+    /**
+     * Returns the checkout pipeline, which records the latency of each checkout stage.
+     *
+     * @return the CheckoutPipeline
+     */
+    public CheckoutPipeline getCheckoutPipeline() {
+        return checkoutPipeline;
+    }
+
+    /**
+     * Finds a user by email and checks their password, without prompting.
+     *
+     * @param email    the email of the user
+     * @param password the password of the user
+     * @return the User, or null if the email or password is wrong
+     */
+    public User login(String email, String password) {
+        long start = System.nanoTime();
+        User user = credentialIndex.findUser(email);
+        boolean valid = user != null && user.getPassword().equals(password);
+        loginLatency.record(System.nanoTime() - start);
+        if (!valid) {
+            loginFailures.increment();
+            return null;
+        }
+        return user;
+    }
+
+    /**
+     * Finds a customer by email.
+     *
+     * @param email the email of the customer
+     * @return the Customer, or null if there is no customer with that email
+     */
+    public Customer findCustomer(String email) {
+        return getCustomerStore().findCustomer(email);
+    }
+
+    /**
+     * Updates the funds of the logged-in customer in place in the customer file.
      *
      * @param funds The new funds to be set for the customer.
-     * @throws FileNotFoundException If the customer file is not found.
      */
-    public void updateCustomerFunds(double funds) throws FileNotFoundException {
-        ArrayList<Customer> userList = new ArrayList<>();
-        File file = new File(CUSTOMER_FILENAME);
-        Scanner reader = new Scanner(file);
-        while (reader.hasNextLine()) {
-            String cust = reader.nextLine();
-            String[] details = cust.split(",");
-            Customer customerObj = new Customer(details[0], details[1], details[2], details[3], details[4], details[5], details[6], Double.parseDouble(details[7]), Boolean.parseBoolean(details[8]), this.shoppingCart);
-            if(customerObj.getEmail().equals(customer.getEmail())){
-                customerObj.setFunds(funds);
-            }
-            userList.add(customerObj);
+    public void updateCustomerFunds(double funds) {
+        getCustomerStore().updateFunds(customer.getEmail(), funds);
+        customer.setFunds(funds);
+    }
+
+    /**
+     * Prints the items of a checkout as a table, building the whole table in one reused buffer so that no
+     * objects are created per item.
+     *
+     * @param items the items to print
+     */
+    private void printCheckoutItems(List<CartItem> items) {
+        StringBuilder table = checkoutTable;
+        table.setLength(0);
+        table.append("===================================  Check out=============================================")
+                .append(System.lineSeparator());
+        table.append("Product              Quantity   Product Price   Total Price").append(System.lineSeparator());
+        table.append("---------------------------------------------------------------------------------------------")
+                .append(System.lineSeparator());
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            int start = table.length();
+            table.append(item.getProduct().getProductName());
+            padTo(table, start + 21);
+            table.append(item.getQuantity());
+            padTo(table, start + 32);
+            Money.appendCents(table, item.getUnitPriceCents());
+            padTo(table, start + 48);
+            Money.appendCents(table, item.getTotalCents()).append(System.lineSeparator());
         }
-        reader.close();
-        FileIO fileIO = new FileIO();
-        fileIO.writeCustomerFile(CUSTOMER_FILENAME, userList);
+        System.out.print(table);
+    }
 
+    // appends at least one space, then spaces up to the given length, like a left-justified printf field
+    private static void padTo(StringBuilder builder, int length) {
+        do {
+            builder.append(' ');
+        } while (builder.length() < length);
     }
 
     /**
@@ -452,85 +897,53 @@ public class MonashMerchantSystem {
         String customerEmail = customer.getEmail();
         String customerName = customer.getFirstName(); //needs to be shown in summary
         System.out.println(UserInterface.loggedInUser);
-        System.out.println("===================================  Check out=============================================");
-        System.out.printf("%-20s %-10s %-15s %-10s%n", "Product", "Quantity", "Product Price", "Total Price");
-        System.out.println("---------------------------------------------------------------------------------------------");
-        double checkoutPrice = 0.0;
-        for (CartItem item : shoppingCart.getItems()) {
-            item.calculateTotalPrice();
-            System.out.printf("%-20s %-10d %-15.2f %-10.2f%n", item.getProduct().getProductName(), item.getQuantity()
-                    , item.getProduct().getPrice(), item.getTotalPrice());
-            checkoutPrice += item.getTotalPrice();
-
-
-        }
-        System.out.println("The total checkout amount is: " + checkoutPrice);
+        printCheckoutItems(shoppingCart.getItems());
+        System.out.println("The total checkout amount is: " + Money.toDollars(shoppingCart.getTotalCents()));
         Scanner scanner = new Scanner(System.in);
         String option;
 
         do {
-            System.out.println("Enter Y to proceed or N to cancel order and return to homescreen. (Items will not be on hold) ");
+            System.out.println("Enter Y to proceed or N to cancel order and return to homescreen. (Items are held for "
+                    + HoldScheduler.getDefault().getHoldTime().toMinutes() + " minutes) ");
             option = scanner.nextLine();
             if (option.equals("Y") || option.equals("y")) {
                 System.out.println("Proceeding to place order....");
-                try {
-                    Thread.sleep(1000);
-                    System.out.println("Checking balance and verifying inventory.....");
-                    if (funds > checkoutPrice) {
-                        System.out.println("Funds verified..");
-                        funds = funds - checkoutPrice;
-                        System.out.println("================");
-                        System.out.println("Order Summary");
-                        System.out.println("================");
-                        System.out.println("Name: " + this.customer.getFirstName() + " Email: " + this.customer.getEmail());
-                        System.out.println("Order Items:");
-                        System.out.println("===================================  Check out=============================================");
-                        System.out.printf("%-20s %-10s %-15s %-10s%n", "Product", "Quantity", "Product Price", "Total Price");
-                        System.out.println("---------------------------------------------------------------------------------------------");
-                        for (CartItem item : shoppingCart.getItems()) {
-                            item.calculateTotalPrice();
-                            System.out.printf("%-20s %-10d %-15.2f %-10.2f%n", item.getProduct().getProductName(), item.getQuantity(), item.getProduct().getPrice(), item.getTotalPrice());
-                        }
-                        System.out.println("Total Price: " + checkoutPrice);
-                        System.out.println("Remaining balance: " + funds);
-
-                        FileIO fileIO = new FileIO();
-                        fileIO.writeInventoryToFile(this.inventory_copy);
-                        updateCustomerFunds(funds);
-                    } else {
-                        System.out.println("Insufficient funds to complete order.");
-                        System.out.println("Current funds: " + funds);
-                        System.out.println("Cart Value: " + checkoutPrice);
-                        shoppingCart.clear();
-                        System.out.println("Cart is being emptied.");
-                        System.out.println("Directing to shop again....");
-                        shop();
-                    }
-
-                    // need to verify funds with the user and if not display error message
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                } catch (FileNotFoundException e) {
-                    throw new RuntimeException(e);
-                }
-                try {
-                    Thread.sleep(1000);
-                    System.out.println("Payment processing.....");
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-                try {
-                    Thread.sleep(1000);
-                    System.out.println("Confirming order. Almost there.....");
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-                try {
-                    Thread.sleep(1000);
-                    System.out.println("Order confirmed !! Here is your order number: ");    // insert an order number here
+                System.out.println("Checking balance and verifying inventory.....");
+                CheckoutPipeline.Order order = placeOrderAsync(customer, shoppingCart).join();
+                if (order.getStatus() == OrderStatus.PLACED) {
+                    System.out.println("Funds verified..");
+                    funds = customer.getFunds();
+                    System.out.println("================");
+                    System.out.println("Order Summary");
+                    System.out.println("================");
+                    System.out.println("Name: " + this.customer.getFirstName() + " Email: " + this.customer.getEmail());
+                    System.out.println("Order Items:");
+                    printCheckoutItems(order.getItems());
+                    System.out.println("Total Price: " + order.getTotal());
+                    System.out.println("Remaining balance: " + funds);
+                    System.out.println("Order confirmed !! Here is your order number: " + order.getOrderNumber());
                     System.out.println("Your remaining funds are: " + funds);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+                } else if (order.getStatus() == OrderStatus.INSUFFICIENT_FUNDS) {
+                    System.out.println("Insufficient funds to complete order.");
+                    System.out.println("Current funds: " + funds);
+                    System.out.println("Cart Value: " + order.getTotal());
+                    //returning the stock deducted when the items were added to cart
+                    emptyCart(shoppingCart);
+                    System.out.println("Cart is being emptied.");
+                    System.out.println("Directing to shop again....");
+                    shop();
+                    return;
+                } else if (order.getStatus() == OrderStatus.NOT_SAVED) {
+                    System.out.println("Your order could not be saved and you have not been charged.");
+                    System.out.println("Please try again.");
+                    System.out.println("Directing to shop again....");
+                    shop();
+                    return;
+                } else {
+                    System.out.println("Some items are no longer in stock and have been removed from your cart.");
+                    System.out.println("Directing to shop again....");
+                    shop();
+                    return;
                 }
                 System.out.print("Please give your feed back for your shopping experience...");
                 System.out.print("Enter X to exit");
@@ -549,30 +962,13 @@ public class MonashMerchantSystem {
 
     }
 
-    /**
-     * Returns the inventory copy.
-     *
-     * @return the inventory copy as an Inventory object
-     */
-    public Inventory getInventoryCopy() {
-        return inventory_copy;
-    }
-
-    /**
-     * Sets the inventory copy
-     *
-     * @param inventoryCopy the new value of inventory copy
-     */
-    public void setInventoryCopy(Inventory inventoryCopy) {
-        this.inventory_copy = inventoryCopy;
-    }
-
     /**
      * Returns the inventory.
      *
      * @return the Inventory object
      */
     public Inventory getInventory() {
+        inventoryReady.join();
         return inventory;
     }
 
@@ -585,6 +981,15 @@ public class MonashMerchantSystem {
         this.inventory = inventory;
     }
 
+    /**
+     * Returns the renderer which prints the product catalog a page at a time.
+     *
+     * @return the CatalogRenderer
+     */
+    public CatalogRenderer getCatalogRenderer() {
+        return catalogRenderer;
+    }
+
     /**
      * Returns the current logged-in user.
      *
@@ -604,21 +1009,25 @@ public class MonashMerchantSystem {
     }
 
     /**
-     * Updates the inventory.txt file with latest values
+     * Updates the inventory.txt file with latest values and empties the inventory journal
      */
     public void updateInventoryFile() {
-        FileIO fileIO = new FileIO();
-        fileIO.writeInventoryToFile(this.inventory);
+        checkoutPipeline.checkpoint();
     }
 
     /**
      * The main entry point of the application.
      *
-     * @param args Command-line arguments (not used).
+     * @param args Command-line arguments. "--server [port]" serves shoppers over the network instead of the console.
      */
-    public static void main(String[] args) throws FileNotFoundException, UnsupportedEncodingException {
+    public static void main(String[] args) throws IOException {
         MonashMerchantSystem monashMerchantSystem = new MonashMerchantSystem();
-        UserInterface userInterface = new UserInterface();
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : MerchantServer.DEFAULT_PORT;
+            new MerchantServer(monashMerchantSystem, port).start();
+            return;
+        }
+        UserInterface userInterface = new UserInterface(monashMerchantSystem);
         userInterface.startMainMenu();
 
     }
@@ -1,12 +1,13 @@
 import entities.Inventory;
 import entities.Product;
 import entities.User;
+import util.CatalogRenderer;
 import util.StringValidation;
 
 import java.io.FileNotFoundException;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -23,15 +24,17 @@ public class UserInterface {
     private MonashMerchantSystem monashMerchantSystem;
 
     /**
-     * Default constructor. Initialize attributes & HashMaps for menus.
+     * Parameterized constructor. Initialize attributes & HashMaps for menus.
      *
+     * @param monashMerchantSystem the system the menus act on
      */
-    public UserInterface() throws FileNotFoundException, UnsupportedEncodingException {
+    public UserInterface(MonashMerchantSystem monashMerchantSystem) throws FileNotFoundException,
+            UnsupportedEncodingException {
         scanner = new Scanner(System.in);
         mainMenu = new HashMap<>();
         AdminHomeMenu = new HashMap<>();
         CustomerMenu = new HashMap<>();
-        monashMerchantSystem = new MonashMerchantSystem();
+        this.monashMerchantSystem = monashMerchantSystem;
         setupHashMaps();
     }
 
@@ -41,13 +44,18 @@ public class UserInterface {
     private void setupHashMaps() {
 
         mainMenu.put("1", this::login);
-        mainMenu.put("q", () -> System.exit(0));
+        mainMenu.put("q", () -> {
+            monashMerchantSystem.shutdown();
+            System.exit(0);});
         AdminHomeMenu.put("1", () -> monashMerchantSystem.addProduct());
         AdminHomeMenu.put("2", () -> monashMerchantSystem.deleteProduct());
         AdminHomeMenu.put("3", this::startEditProductMenu);
         AdminHomeMenu.put("4", () -> {
             monashMerchantSystem.initializeInventory();
             monashMerchantSystem.browseProducts();});
+        AdminHomeMenu.put("5", () -> monashMerchantSystem.printStockReport());
+        AdminHomeMenu.put("6", () -> monashMerchantSystem.importProducts());
+        AdminHomeMenu.put("7", () -> monashMerchantSystem.printMetrics());
         AdminHomeMenu.put("b", () -> {
         });
         CustomerMenu.put("1", () -> {
@@ -55,6 +63,8 @@ public class UserInterface {
             monashMerchantSystem.browseProducts();});
         CustomerMenu.put("2", () -> monashMerchantSystem.shop());
         CustomerMenu.put("3", () -> monashMerchantSystem.checkout());
+        CustomerMenu.put("4", () -> monashMerchantSystem.searchProducts());
+        CustomerMenu.put("5", () -> monashMerchantSystem.browseByFilter());
         CustomerMenu.put("b", () -> {
         });
 
@@ -116,6 +126,9 @@ public class UserInterface {
             System.out.println("2. Delete a product");
             System.out.println("3. Edit a product");
             System.out.println("4. View products");
+            System.out.println("5. Stock report");
+            System.out.println("6. Import products from file");
+            System.out.println("7. Metrics");
             System.out.println("b. Log out");
 
             String choice = scanner.nextLine().trim(); // TODO: replace with I/O class method
@@ -136,26 +149,30 @@ public class UserInterface {
      */
     private void startEditProductMenu() {
         Inventory inventory = monashMerchantSystem.getInventory();
-        ArrayList<Product> products = inventory.getProducts();
+        CatalogRenderer.Cursor cursor = monashMerchantSystem.getCatalogRenderer().cursor(inventory, 0, false);
 
         while (true) {
             displayLogo();
-            displayInventory();
+            cursor.print();
             System.out.println(LINE_BREAK);
             System.out.println("Enter the ID of the product to be edited?");
             System.out.println(LINE_BREAK);
             System.out.println("ID: ");
 
             String input = scanner.nextLine().trim();
-            if (StringValidation.isInteger(input)) {
-                int productID = Integer.parseInt(input);
-                if (productID >= 0 && productID <= products.size() - 1) {
-                    Product product = products.get(productID);
-                    startEditProductMenuTwo(product);
+            if (input.equalsIgnoreCase("n") && cursor.next() || input.equalsIgnoreCase("p") && cursor.previous()) {
+                continue;
+            }
+            int productID = StringValidation.parseInt(input, -1);
+            List<Product> listed = cursor.getPrinted();
+            if (productID >= 0 && productID <= listed.size() - 1) {
+                Product product = listed.get(productID);
+                //Edit a copy, so shoppers never see a product half edited
+                Product edited = product.copy();
 
-                    //Update product in MonashMerchantSystem's inventory
-                    products.set(productID, product);
-                    monashMerchantSystem.updateInventoryFile();
+                //Replace the product in MonashMerchantSystem's inventory, unless the edit was cancelled
+                if (startEditProductMenuTwo(edited) && !monashMerchantSystem.editProduct(product, edited)) {
+                    System.out.println("The edit was not saved, as another product has that name and brand.");
                 }
             }
             break;
@@ -167,8 +184,10 @@ public class UserInterface {
      * Displays the Edit Product Menu 2 and allows the user to edit different fields of the product.
      *
      * @param product the product to be edited
+     * @return true if a field was changed, false if the edit was cancelled or the new value was invalid
      */
-    private void startEditProductMenuTwo(Product product) {
+    private boolean startEditProductMenuTwo(Product product) {
+        boolean changed = false;
         while (true) {
             displayLogo();
             System.out.println(LINE_BREAK);
@@ -187,94 +206,104 @@ public class UserInterface {
             String choice = scanner.nextLine().trim(); // TODO: replace with I/O class method
             if (choice.equals("b")) break;
 
-            if (StringValidation.isInteger(choice) && Integer.parseInt(choice) >= 0 && Integer.parseInt(choice) <= 8) {
+            int number = StringValidation.parseInt(choice, -1);
+            if (number >= 0 && number <= 8) {
                 String input = "";
+                String error;
                 switch (choice) {
                     case "1":
-                        System.out.print("Enter new name, comma is not accepted: ");
+                        System.out.print("Enter new name: ");
                         input = scanner.nextLine().trim();
-                        if (input.contains(",")) {
-                            System.out.println("Name can't contain comma symbol. Please try again.");
-                            break;
+                        error = StringValidation.PRODUCT_NAME.check(input);
+                        if (error != null) {
+                            System.out.println(error + ". Please try again.");
                         } else {
                             product.setProductName(input);
+                            changed = true;
                             System.out.println("Name updated.");
                         }
                         break;
                     case "2":
                         System.out.print("Enter new brand: ");
                         input = scanner.nextLine().trim();
-                        if (input.contains(",")) {
-                            System.out.println("Brand can't contain comma symbol. Please try again.");
-                            break;
+                        error = StringValidation.BRAND.check(input);
+                        if (error != null) {
+                            System.out.println(error + ". Please try again.");
                         } else {
                             product.setBrand(input);
+                            changed = true;
                             System.out.println("Brand updated.");
                         }
                         break;
                     case "3":
                         System.out.print("Enter new description: ");
                         input = scanner.nextLine().trim();
-                        if (input.contains(",")) {
-                            System.out.println("Description can't contain comma symbol. Please try again.");
-                            break;
+                        error = StringValidation.DESCRIPTION.check(input);
+                        if (error != null) {
+                            System.out.println(error + ". Please try again.");
                         } else {
                             product.setDescription(input);
+                            changed = true;
                             System.out.println("Description updated.");
                         }
                         break;
                     case "4":
                         System.out.print("Enter new price: ");
                         input = scanner.nextLine().trim();
-                        if (!StringValidation.isDouble(input)) {
-                            System.out.println("Not a valid price. Please try again.");
-                            break;
+                        error = StringValidation.PRICE.check(input);
+                        if (error != null) {
+                            System.out.println(error + ". Please try again.");
                         } else {
-                            product.setPrice(Double.parseDouble(input));
+                            product.setPrice(StringValidation.parseDouble(input, 0));
+                            changed = true;
                             System.out.println("Price updated.");
                         }
                         break;
                     case "5":
                         System.out.print("Enter new member price: ");
                         input = scanner.nextLine().trim();
-                        if (!StringValidation.isDouble(input)) {
-                            System.out.println("Not a valid price. Please try again.");
-                            break;
+                        error = StringValidation.MEMBER_PRICE.check(input);
+                        if (error != null) {
+                            System.out.println(error + ". Please try again.");
                         } else {
-                            product.setMemberPrice(Double.parseDouble(input));
+                            product.setMemberPrice(StringValidation.parseDouble(input, 0));
+                            changed = true;
                             System.out.println("Member price updated.");
                         }
                         break;
                     case "6":
                         System.out.print("Enter new quantity: ");
                         input = scanner.nextLine().trim();
-                        if (!StringValidation.isInteger(input)) {
-                            System.out.println("Not a valid number. Please try again.");
-                            break;
+                        error = StringValidation.STOCK_ON_HAND.check(input);
+                        if (error != null) {
+                            System.out.println(error + ". Please try again.");
                         } else {
-                            product.setQuantity(Integer.parseInt(input));
+                            product.setQuantity(StringValidation.parseInt(input, 0));
+                            changed = true;
                             System.out.println("Quantity updated.");
                         }
                         break;
                     case "7":
                         System.out.print("Enter new category: ");
                         input = scanner.nextLine().trim();
-                        if (input.contains(",")) {
-                            System.out.println("Category name can't contain comma symbol. Please try again.");
-                            break;
+                        error = StringValidation.CATEGORY.check(input);
+                        if (error != null) {
+                            System.out.println(error + ". Please try again.");
                         } else {
-                            product.setDescription(input);
+                            product.setCategory(input);
+                            changed = true;
                             System.out.println("Category updated.");
                         }
                         break;
                     case "8":
                         System.out.print("Enter new subcategory: ");
                         input = scanner.nextLine().trim();
-                        if (input.contains(",")) {
-                            System.out.println("Subcategory name can't contain comma symbol. Please try again.");
-                            break;
+                        error = StringValidation.SUB_CATEGORY.check(input);
+                        if (error != null) {
+                            System.out.println(error + ". Please try again.");
                         } else {
-                            product.setDescription(input);
+                            product.setSubCategory(input);
+                            changed = true;
                             System.out.println("Subcategory updated.");
                         }
                         break;
@@ -286,6 +315,7 @@ public class UserInterface {
             }
 
         }
+        return changed;
     }
 
     /**
@@ -301,6 +331,8 @@ public class UserInterface {
             System.out.println("1. Browse Products");
             System.out.println("2. Shop");
             System.out.println("3. View Shopping Cart/Checkout");
+            System.out.println("4. Search products");
+            System.out.println("5. Browse by category and brand");
             System.out.println("b. Log out");
 
             String choice = scanner.nextLine().trim(); // TODO: replace with I/O class method
@@ -316,23 +348,6 @@ public class UserInterface {
         }
     }
 
-    /**
-     * Displays inventory in a pretty format.
-     */
-    public void displayInventory() {
-        Inventory inventory = monashMerchantSystem.getInventory();
-        System.out.printf("%-4s\t%-20s\t%-15s\t%-15s\t%-15s\t%-5s\t%-5s\t%s\t%s%n", "No.", "Name", "Brand", "Category"
-                , "SubCategory", "Price", "Member Price", "Quantity", "Description");
-        int index = 0;
-
-        for (Product product : inventory.getProducts()) {
-            System.out.printf("%-4d\t%-20s\t%-15s\t%-15s\t%-15s\t%.2f\t%-15.2f\t%-15d\t%s%n", index,
-                    product.getProductName(), product.getBrand(), product.getCategory(), product.getSubCategory(),
-                    product.getPrice(), product.getMemberPrice(), product.getQuantity(), product.getDescription());
-            index++;
-        }
-    }
-
     /**
      * Displays Monash Merchant System logo.
      */
@@ -10,7 +10,8 @@ public class CartItem {
 
     private Product product;
     private int quantity;
-    private double totalPrice;
+    private long unitPriceCents;
+    private StockHold hold;
 
     /**
      * Default constructor which creates the object of the class Admin.
@@ -20,14 +21,46 @@ public class CartItem {
 
     /**
      * Parametrized constructor which creates the object of the class Admin.
+     * The item keeps the price of the product at the time it was added to cart.
      */
     public CartItem(Product product, int quantity) {
 
         this.product = product;
         this.quantity = quantity;
+        this.unitPriceCents = product.getPriceCents();
 
     }
 
+    /**
+     * Parametrized constructor which creates a cart item whose stock is held for it.
+     *
+     * @param product  the product added to cart
+     * @param quantity the quantity of the product
+     * @param hold     the hold reserving the stock of the item
+     */
+    public CartItem(Product product, int quantity, StockHold hold) {
+        this(product, quantity);
+        this.hold = hold;
+    }
+
+    /**
+     * Accessor method to get the hold reserving the stock of the item.
+     *
+     * @return the StockHold of the item, or null if its stock is not held
+     */
+    public StockHold getHold() {
+        return hold;
+    }
+
+    /**
+     * Mutator method to set the hold reserving the stock of the item.
+     *
+     * @param hold the StockHold of the item
+     */
+    public void setHold(StockHold hold) {
+        this.hold = hold;
+    }
+
     /**
      * Accessor method to get an object of Product.
      *
@@ -44,6 +77,17 @@ public class CartItem {
      */
     public void setProduct(Product product) {
         this.product = product;
+        this.unitPriceCents = product.getPriceCents();
+    }
+
+    /**
+     * Mutator method to point the item at the current version of its product, which an edit has replaced.
+     * The item keeps the price of one unit when it was added to cart.
+     *
+     * @param product the product as it is now, with the same id as the item's product
+     */
+    public void refreshProduct(Product product) {
+        this.product = product;
     }
 
     /**
@@ -65,28 +109,22 @@ public class CartItem {
     }
 
     /**
-     * Accessor method to get an integer value that stores the total price.
+     * Accessor method to get the price of one unit when the item was added to cart.
      *
-     * @return An integer that indicates the total price.
+     * @return the unit price in cents
      */
-    public double getTotalPrice() {
-        return totalPrice;
+    public long getUnitPriceCents() {
+        return unitPriceCents;
     }
 
     /**
-     * Mutator method to set total price.
+     * Accessor method to get the total price of the item. The total is worked out from the unit price and
+     * the quantity each time, so it is never out of date; the shopping cart keeps the total of all items.
      *
-     * @param totalPrice A double value that stores the total price.
-     */
-    public void setTotalPrice(double totalPrice) {
-        this.totalPrice = totalPrice;
-    }
-
-    /**
-     * Method to calculate the total price based on quantity and price.
+     * @return the unit price times the quantity, in cents
      */
-    public void calculateTotalPrice() {
-        totalPrice = product.getPrice() * quantity;
+    public long getTotalCents() {
+        return unitPriceCents * quantity;
     }
 
     /**
@@ -98,7 +136,7 @@ public class CartItem {
         String str = "";
         str += "Product Name: " + product.getProductName() + "\n";
         str += "Quantity: " + quantity + ", ";
-        str += "Price: " + totalPrice + "\n";
+        str += "Price: " + getTotalCents() / 100.0 + "\n";
         return (str);
     }
 
@@ -0,0 +1,194 @@
+package entities;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Creates time-limited stock holds for carts and expires them.
+ * Holds wait on a timing wheel: the hold time is divided into ticks, and each hold is put in the bucket of
+ * the tick its deadline falls in. A single daemon thread wakes once a tick and expires the bucket of the
+ * tick just passed, so the cost of expiry depends on the number of holds expiring rather than the number of
+ * carts. Buckets are concurrent sets, so adding a hold never takes a lock shared with other carts, and a
+ * hold leaves its bucket as soon as it is committed, released or replaced, so the wheel only keeps holds
+ * which may still expire. Every hold lasts the same time, so a bucket is empty again before the wheel
+ * comes back round to it.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class HoldScheduler {
+    public static final Duration DEFAULT_HOLD_TIME = Duration.ofMinutes(15);
+    // a hold expires at most one tick after its deadline
+    private static final int TICKS_PER_HOLD_TIME = 512;
+    private static final long MIN_TICK_NANOS = 1_000_000;
+    private static final HoldScheduler DEFAULT = new HoldScheduler(DEFAULT_HOLD_TIME);
+
+    private final Duration holdTime;
+    private final long tickNanos;
+    // a bucket for each tick of the hold time, and two more so the bucket being expired is not yet reused
+    private final List<Set<StockHold>> buckets = new ArrayList<>();
+    // the last tick whose bucket has been expired; only changed by the expiry thread
+    private volatile long expiredTick;
+    private volatile Thread expiryThread;
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param holdTime how long a hold reserves stock for
+     */
+    public HoldScheduler(Duration holdTime) {
+        this.holdTime = holdTime;
+        this.tickNanos = Math.max(MIN_TICK_NANOS, holdTime.toNanos() / TICKS_PER_HOLD_TIME);
+        for (int i = 0; i < TICKS_PER_HOLD_TIME + 2; i++) {
+            buckets.add(ConcurrentHashMap.newKeySet());
+        }
+        this.expiredTick = tickOf(System.nanoTime()) - 1;
+    }
+
+    /**
+     * Returns the scheduler shared by carts which are not given one.
+     *
+     * @return the default HoldScheduler
+     */
+    public static HoldScheduler getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns how long a hold reserves stock for.
+     *
+     * @return the hold time
+     */
+    public Duration getHoldTime() {
+        return holdTime;
+    }
+
+    /**
+     * Reserves stock of a product and holds it until the hold time has passed.
+     *
+     * @param product  the product to reserve
+     * @param quantity the quantity to reserve
+     * @return the StockHold, or null if not enough stock is available
+     */
+    public StockHold hold(Product product, int quantity) {
+        if (!product.getStock().tryReserve(quantity)) {
+            return null;
+        }
+        return schedule(product.getStock(), quantity, false);
+    }
+
+    /**
+     * Replaces a hold with one for a different quantity of the same product, with a new deadline.
+     * Only the difference in quantity is reserved or released; if the old hold has already lapsed, the
+     * whole quantity is reserved again. The replacement of a pinned hold is pinned in turn, so it is the
+     * one checkout commits.
+     *
+     * @param hold     the hold to replace, or null if the quantity is not held
+     * @param product  the held product
+     * @param quantity the new quantity to hold
+     * @return the replacement StockHold, or null if not enough stock is available, in which case the old
+     * hold is left as it was
+     */
+    public StockHold resize(StockHold hold, Product product, int quantity) {
+        StockLevel stock = product.getStock();
+        int held = hold == null ? 0 : hold.getQuantity();
+        int extra = Math.max(0, quantity - held);
+        if (extra > 0 && !stock.tryReserve(extra)) {
+            return null;
+        }
+        boolean pinned = false;
+        if (hold != null && (hold.transfer() || (pinned = hold.transferPinned()))) {
+            if (quantity < held) {
+                stock.release(held - quantity);
+            }
+        } else if (!stock.tryReserve(quantity - extra)) {
+            // the old hold has lapsed, so its part of the quantity has to be reserved again
+            stock.release(extra);
+            return null;
+        }
+        return schedule(stock, quantity, pinned);
+    }
+
+    /**
+     * Returns the number of holds waiting to expire. Committed, released and replaced holds are not counted.
+     *
+     * @return the number of scheduled holds
+     */
+    public int pendingHolds() {
+        int pending = 0;
+        for (Set<StockHold> bucket : buckets) {
+            pending += bucket.size();
+        }
+        return pending;
+    }
+
+    // the quantity must already be reserved
+    private StockHold schedule(StockLevel stock, int quantity, boolean pinned) {
+        long deadline = System.nanoTime() + holdTime.toNanos();
+        long tick = tickOf(deadline);
+        Set<StockHold> bucket = buckets.get(bucketOf(tick));
+        StockHold hold = new StockHold(stock, quantity, deadline, bucket, pinned);
+        startExpiryThread();
+        bucket.add(hold);
+        if (tick <= expiredTick) {
+            // only if this thread stalled for a whole hold time, after which its bucket had already expired
+            bucket.remove(hold);
+            hold.expire();
+        }
+        return hold;
+    }
+
+    private void startExpiryThread() {
+        if (expiryThread != null) {
+            return;
+        }
+        synchronized (this) {
+            if (expiryThread == null) {
+                Thread thread = new Thread(this::expireHolds, "stock-hold-expiry");
+                thread.setDaemon(true);
+                thread.start();
+                expiryThread = thread;
+            }
+        }
+    }
+
+    private void expireHolds() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            long tick = tickOf(now);
+            // every deadline in the bucket of a passed tick has passed; after a long stall each bucket is
+            // expired once
+            for (long passed = Math.max(expiredTick + 1, tick - buckets.size()); passed < tick; passed++) {
+                expire(buckets.get(bucketOf(passed)), now);
+            }
+            expiredTick = tick - 1;
+            LockSupport.parkNanos(this, (tick + 1) * tickNanos - now);
+        }
+    }
+
+    // a bucket can also hold holds of a later turn of the wheel if the thread ran late, which are kept
+    private static void expire(Set<StockHold> bucket, long now) {
+        Iterator<StockHold> holds = bucket.iterator();
+        while (holds.hasNext()) {
+            StockHold hold = holds.next();
+            if (hold.getDeadline() - now <= 0) {
+                holds.remove();
+                // pinned holds are left to expire themselves when unpinned
+                hold.expire();
+            }
+        }
+    }
+
+    private long tickOf(long nanoTime) {
+        return Math.floorDiv(nanoTime, tickNanos);
+    }
+
+    private int bucketOf(long tick) {
+        return (int) Math.floorMod(tick, (long) buckets.size());
+    }
+}
@@ -1,41 +1,205 @@
 package entities;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Inventory entity class.
- * Stores product information for Inventory for the Monash Merchant Application
+ * Stores product information for Inventory for the Monash Merchant Application.
+ * Products are kept in listing order and indexed by key, brand, category and sub-category.
+ * When a listing order is set, it is maintained on every add and edit instead of re-sorting the catalog.
+ * Each product is given a listing sequence as it is added; the listing is sorted by the maintained order
+ * and then by sequence, and each index bucket by sequence, so a product is found in either by binary
+ * search when it is edited or removed.
+ * An order by stock on hand cannot be maintained, as orders change stock without changing the inventory;
+ * the listing is then kept in the order products were added, and sorted by stock when it is read. Once a
+ * view by stock has been read, the inventory counts the stock changes of its products, and the view is only
+ * sorted again once the count has moved, so reading an unchanged view costs nothing.
+ * Stock reports scan a columnar copy of the prices, stock and categories, which is built on the first
+ * report and then kept up to date, as is the full-text search index, which is built on the first search,
+ * and the facet counts used to narrow down the catalog, which are built on the first filtered query.
+ * Readers never lock: the product listing is an immutable version which each change replaces with a new
+ * one sharing all but the changed part, and each index bucket is replaced rather than changed. Changes
+ * are made one at a time, and a product is edited by replacing it with an edited copy, so a reader sees
+ * each product and each listing either wholly before or wholly after a change.
  *
  * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
  * @version 5/16/2024
  */
 public class Inventory {
-    private ArrayList<Product> products;
+    private volatile ProductList products;
+    private volatile ConcurrentHashMap<String, Product> productsByKey;
+    private volatile ConcurrentHashMap<Long, Product> productsById;
+    private volatile ConcurrentHashMap<String, ProductList> productsByBrand;
+    private volatile ConcurrentHashMap<String, ProductList> productsByCategory;
+    private volatile ConcurrentHashMap<String, ProductList> productsBySubCategory;
+    // index keys each product was indexed under; only read and changed by writers
+    private IdentityHashMap<Product, String[]> indexedKeys;
+    // listing sequence of each product; only read and changed by writers
+    private IdentityHashMap<Product, Long> sequences;
+    private long nextSequence;
+    private ProductSortOrder listingOrder;
+    // the order the listing is kept in: the listing order, unless that follows stock
+    private Comparator<Product> maintainedOrder;
+    private volatile long version;
+    private volatile SortedViews sortedViews;
+    private volatile StockChanges stockChanges;
+    private volatile ProductColumns columns;
+    private volatile ProductSearchIndex searchIndex;
+    private volatile ProductFacets facets;
+
+    /**
+     * The sorted views of one version of the product listing.
+     */
+    private static class SortedViews {
+        private final ProductList source;
+        private final Map<ProductSortOrder, SortedView> views = Collections.synchronizedMap(
+                new EnumMap<>(ProductSortOrder.class));
+
+        private SortedViews(ProductList source) {
+            this.source = source;
+        }
+    }
+
+    /**
+     * A sorted view, with the count of stock changes it was sorted after if it is sorted by stock.
+     */
+    private static class SortedView {
+        private final List<Product> products;
+        private final StockChanges stockChanges;
+        private final long sortedAfter;
+
+        private SortedView(List<Product> products, StockChanges stockChanges, long sortedAfter) {
+            this.products = products;
+            this.stockChanges = stockChanges;
+            this.sortedAfter = sortedAfter;
+        }
+    }
+
+    /**
+     * Counts the stock changes of the inventory's products. The count is striped, so products changing
+     * stock at once do not contend on it.
+     */
+    private static class StockChanges implements StockListener {
+        private final LongAdder changes = new LongAdder();
+
+        @Override
+        public void onHandChanged(StockLevel stock) {
+            changes.increment();
+        }
+    }
 
     /**
      * Default constructor.
      */
     public Inventory() {
-        products = new ArrayList<>();
+        products = ProductList.EMPTY;
+        productsByKey = new ConcurrentHashMap<>();
+        productsById = new ConcurrentHashMap<>();
+        productsByBrand = new ConcurrentHashMap<>();
+        productsByCategory = new ConcurrentHashMap<>();
+        productsBySubCategory = new ConcurrentHashMap<>();
+        indexedKeys = new IdentityHashMap<>();
+        sequences = new IdentityHashMap<>();
+    }
+
+    /**
+     * Constructor which creates an inventory listed in the given order.
+     *
+     * @param listingOrder the order products are listed in
+     */
+    public Inventory(ProductSortOrder listingOrder) {
+        this();
+        this.listingOrder = listingOrder;
+        this.maintainedOrder = listingOrder.followsStock() ? null : listingOrder.getComparator();
+    }
+
+    /**
+     * Accessor method to get the Products in the inventory in listing order.
+     *
+     * @return the current version of the listing, which later changes to the inventory do not affect
+     */
+    public List<Product> getProducts() {
+        return maintainedOrder == null && listingOrder != null ? getProducts(listingOrder) : products;
     }
 
     /**
-     * Accessor method to get an Arraylist of Products in the inventory.
+     * Accessor method to get the Products in the inventory sorted in an order.
+     * Sorted views are cached until the inventory next changes. A view by stock is also sorted again once the
+     * stock of a product has changed.
      *
-     * @return An arraylist of Product objects.
+     * @param order the order to sort the products in
+     * @return A read-only list of Product objects in the given order.
      */
-    public ArrayList<Product> getProducts() {
-        return products;
+    public List<Product> getProducts(ProductSortOrder order) {
+        ProductList current = products;
+        if (order == listingOrder && maintainedOrder != null) {
+            return current;
+        }
+        SortedViews views = sortedViews;
+        if (views == null || views.source != current) {
+            views = new SortedViews(current);
+            sortedViews = views;
+        }
+        SortedView view = views.views.get(order);
+        StockChanges changes = order.followsStock() ? stockChanges() : null;
+        // counted before sorting, so a change made while sorting is sorted again next time
+        long sortedAfter = changes == null ? 0 : changes.changes.sum();
+        if (view != null && view.stockChanges == changes && view.sortedAfter == sortedAfter) {
+            return view.products;
+        }
+        // a view by stock which has fallen out of order is nearly sorted, so it is sorted again from itself
+        List<Product> sorted = Collections.unmodifiableList(order.sort(view != null ? view.products : current));
+        views.views.put(order, new SortedView(sorted, changes, sortedAfter));
+        return sorted;
     }
 
     /**
-     * Mutator method to set products.
+     * Mutator method to set products. Rebuilds all indexes and sorts the listing once.
      *
-     * @param products An arraylist of products in the inventory.
+     * @param products A list of products in the inventory.
      */
-    public void setProducts(ArrayList<Product> products) {
-        this.products = products;
+    public synchronized void setProducts(List<Product> products) {
+        // a listing by stock starts out sorted on the stock it was loaded with, so it is cheap to sort again
+        List<Product> listed = listingOrder == null ? new ArrayList<>(products) : listingOrder.sort(products);
+        // build the indexes before publishing them, so readers see the old or the new ones whole
+        ConcurrentHashMap<String, Product> byKey = new ConcurrentHashMap<>();
+        ConcurrentHashMap<Long, Product> byId = new ConcurrentHashMap<>();
+        HashMap<String, ArrayList<Product>> byBrand = new HashMap<>();
+        HashMap<String, ArrayList<Product>> byCategory = new HashMap<>();
+        HashMap<String, ArrayList<Product>> bySubCategory = new HashMap<>();
+        indexedKeys = new IdentityHashMap<>();
+        sequences = new IdentityHashMap<>();
+        for (Product product : listed) {
+            String[] keys = indexKeys(product);
+            sequences.put(product, nextSequence++);
+            byKey.putIfAbsent(keys[0], product);
+            byId.put(product.getId(), product);
+            byBrand.computeIfAbsent(keys[1], k -> new ArrayList<>()).add(product);
+            byCategory.computeIfAbsent(keys[2], k -> new ArrayList<>()).add(product);
+            bySubCategory.computeIfAbsent(keys[3], k -> new ArrayList<>()).add(product);
+            indexedKeys.put(product, keys);
+        }
+        productsByKey = byKey;
+        productsById = byId;
+        productsByBrand = buckets(byBrand);
+        productsByCategory = buckets(byCategory);
+        productsBySubCategory = buckets(bySubCategory);
+        // released while the old products are listed, as it stops following their stock
+        release();
+        this.products = ProductList.of(listed);
+        searchIndex = null;
+        version++;
     }
 
     /**
@@ -43,9 +207,610 @@ public class Inventory {
      *
      * @param product Product to be added to the inventory.
      */
-    public void addProduct(Product product) {
-        this.products.add(product);
+    public synchronized void addProduct(Product product) {
+        products = products.inserted(insertionPoint(products, product), product);
+        index(product, nextSequence++);
+        if (stockChanges != null) {
+            product.getStock().addListener(stockChanges);
+        }
+        if (columns != null) {
+            columns.add(product);
+        }
+        if (searchIndex != null) {
+            searchIndex.add(product);
+        }
+        if (facets != null) {
+            facets.add(product);
+        }
+        version++;
+    }
+
+    /**
+     * Adds products to the inventory as one change. Readers see the listing with all of them or with none.
+     * The listing is rebuilt once, merging the added products into place, rather than once per product.
+     *
+     * @param added the products to add
+     */
+    public synchronized void addProducts(List<Product> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        ArrayList<Product> batch = new ArrayList<>(added);
+        // in the order given, which the stable sort below keeps among products which sort equal
+        for (Product product : added) {
+            sequences.put(product, nextSequence++);
+        }
+        ArrayList<Product> merged = new ArrayList<>(products.size() + batch.size());
+        if (maintainedOrder == null) {
+            merged.addAll(products);
+            merged.addAll(batch);
+        } else {
+            // stable, and existing products stay before added ones which sort equal to them, as in addProduct
+            batch.sort(maintainedOrder);
+            Iterator<Product> existing = products.iterator();
+            Product next = existing.hasNext() ? existing.next() : null;
+            for (Product product : batch) {
+                while (next != null && maintainedOrder.compare(next, product) <= 0) {
+                    merged.add(next);
+                    next = existing.hasNext() ? existing.next() : null;
+                }
+                merged.add(product);
+            }
+            while (next != null) {
+                merged.add(next);
+                next = existing.hasNext() ? existing.next() : null;
+            }
+        }
+        HashMap<String, ArrayList<Product>> byBrand = new HashMap<>();
+        HashMap<String, ArrayList<Product>> byCategory = new HashMap<>();
+        HashMap<String, ArrayList<Product>> bySubCategory = new HashMap<>();
+        for (Product product : added) {
+            String[] keys = indexKeys(product);
+            productsByKey.putIfAbsent(keys[0], product);
+            productsById.put(product.getId(), product);
+            byBrand.computeIfAbsent(keys[1], k -> new ArrayList<>()).add(product);
+            byCategory.computeIfAbsent(keys[2], k -> new ArrayList<>()).add(product);
+            bySubCategory.computeIfAbsent(keys[3], k -> new ArrayList<>()).add(product);
+            indexedKeys.put(product, keys);
+        }
+        appendToBuckets(productsByBrand, byBrand);
+        appendToBuckets(productsByCategory, byCategory);
+        appendToBuckets(productsBySubCategory, bySubCategory);
+        products = ProductList.of(merged);
+        for (Product product : added) {
+            if (stockChanges != null) {
+                product.getStock().addListener(stockChanges);
+            }
+            if (columns != null) {
+                columns.add(product);
+            }
+            if (searchIndex != null) {
+                searchIndex.add(product);
+            }
+            if (facets != null) {
+                facets.add(product);
+            }
+        }
+        version++;
+    }
+
+    /**
+     * Returns the listing order of this inventory.
+     *
+     * @return the listing order, or null if products are listed in insertion order
+     */
+    public ProductSortOrder getListingOrder() {
+        return listingOrder;
+    }
+
+    /**
+     * Returns a counter which changes whenever products are added, edited or removed.
+     *
+     * @return the current version of the inventory
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Accessor method to get the product at a listing position.
+     *
+     * @param index zero-based position of the product
+     * @return the Product at that position
+     */
+    public Product getProduct(int index) {
+        return getProducts().get(index);
+    }
+
+    /**
+     * Returns the number of products in the inventory.
+     *
+     * @return the number of products
+     */
+    public int size() {
+        return products.size();
+    }
+
+    /**
+     * Removes the product at a listing position.
+     *
+     * @param index zero-based position of the product
+     * @return the removed Product
+     */
+    public synchronized Product removeProduct(int index) {
+        Product product = getProducts().get(index);
+        removeProduct(product);
+        return product;
+    }
+
+    /**
+     * Removes a product from the inventory.
+     *
+     * @param product the product to be removed
+     * @return true if the product was in the inventory
+     */
+    public synchronized boolean removeProduct(Product product) {
+        if (!indexedKeys.containsKey(product)) {
+            return false;
+        }
+        products = products.removed(search(products, product, maintainedOrder));
+        unindex(product);
+        if (stockChanges != null) {
+            product.getStock().removeListener(stockChanges);
+        }
+        if (columns != null) {
+            columns.remove(product);
+        }
+        if (searchIndex != null) {
+            searchIndex.remove(product);
+        }
+        if (facets != null) {
+            facets.remove(product);
+        }
+        version++;
+        return true;
+    }
+
+    /**
+     * Replaces a product with an edited copy of it, moving it to keep the listing order. Readers see either
+     * the product or its replacement, never a product part way through being edited. An edit which would give
+     * the product the name and brand of another product is refused, so each key names one product.
+     *
+     * @param product  the product to replace
+     * @param edited   the edited product, published by {@link Product#publish()}
+     * @return true if the product was in the inventory and has been replaced, false if it was not or another
+     * product has the edited name and brand
+     */
+    public synchronized boolean replaceProduct(Product product, Product edited) {
+        if (!indexedKeys.containsKey(product)) {
+            return false;
+        }
+        if (!edited.getKey().equals(product.getKey()) && productsByKey.containsKey(edited.getKey())) {
+            return false;
+        }
+        int position = search(products, product, maintainedOrder);
+        ProductList remaining = products.removed(position);
+        // keep the product's place when there is no order to keep; otherwise it goes after the products which
+        // sort equal to it, as the last one listed
+        long sequence = maintainedOrder == null ? sequences.get(product) : nextSequence++;
+        products = remaining.inserted(maintainedOrder == null ? position : insertionPoint(remaining, edited), edited);
+        unindex(product);
+        index(edited, sequence);
+        if (stockChanges != null) {
+            product.getStock().removeListener(stockChanges);
+            edited.getStock().addListener(stockChanges);
+        }
+        if (columns != null) {
+            columns.remove(product);
+            columns.add(edited);
+        }
+        if (searchIndex != null) {
+            searchIndex.remove(product);
+            searchIndex.add(edited);
+        }
+        if (facets != null) {
+            facets.remove(product);
+            facets.add(edited);
+        }
+        version++;
+        return true;
+    }
+
+    /**
+     * Finds a product by name and brand.
+     *
+     * @param productName the name of the product
+     * @param brand       the brand of the product
+     * @return the matching Product, or null if there is none
+     */
+    public Product findProduct(String productName, String brand) {
+        return productsByKey.get(Product.keyOf(productName, brand));
+    }
+
+    /**
+     * Finds a product by its key.
+     *
+     * @param key the product key, as returned by {@link Product#getKey()}
+     * @return the matching Product, or null if there is none
+     */
+    public Product findProductByKey(String key) {
+        return productsByKey.get(key);
+    }
+
+    /**
+     * Finds a product by its id. A product keeps its id when it is edited, so this finds the current version
+     * of a product which has been edited since it was read.
+     *
+     * @param id the product id, as returned by {@link Product#getId()}
+     * @return the matching Product, or null if it is no longer in the inventory
+     */
+    public Product findProductById(long id) {
+        return productsById.get(id);
+    }
+
+    /**
+     * Returns the products of a brand.
+     *
+     * @param brand the brand name
+     * @return a read-only collection of the brand's products, which later changes do not affect
+     */
+    public Collection<Product> getProductsByBrand(String brand) {
+        return lookup(productsByBrand, normalise(brand));
+    }
+
+    /**
+     * Returns the products in a category.
+     *
+     * @param category the category name
+     * @return a read-only collection of the category's products, which later changes do not affect
+     */
+    public Collection<Product> getProductsByCategory(String category) {
+        return lookup(productsByCategory, normalise(category));
+    }
+
+    /**
+     * Returns the products in a sub-category of a category.
+     *
+     * @param category    the category name
+     * @param subCategory the sub-category name
+     * @return a read-only collection of the sub-category's products, which later changes do not affect
+     */
+    public Collection<Product> getProductsBySubCategory(String category, String subCategory) {
+        return lookup(productsBySubCategory, subCategoryKey(category, subCategory));
+    }
+
+    /**
+     * Searches the name, brand and description of the products. Every word of the query must match the
+     * start of a word in one of those fields, and products are ranked by where the words matched, with
+     * name matches ranked above brand and description matches.
+     *
+     * @param query the words to search for
+     * @param limit the most products to return
+     * @return the matching products, most relevant first
+     */
+    public List<Product> search(String query, int limit) {
+        return searchIndex().search(query, limit);
+    }
+
+    /**
+     * Returns the products selected by a filter, in listing order.
+     *
+     * @param filter the filter to select products by
+     * @return the selected products
+     */
+    public List<Product> getProducts(ProductFilter filter) {
+        List<Product> listed = getProducts();
+        Collection<Product> candidates;
+        if (filter.getSubCategory() != null) {
+            candidates = getProductsBySubCategory(filter.getCategory(), filter.getSubCategory());
+        } else if (filter.getCategory() != null) {
+            candidates = getProductsByCategory(filter.getCategory());
+        } else if (filter.getBrand() != null) {
+            candidates = getProductsByBrand(filter.getBrand());
+        } else {
+            candidates = listed;
+        }
+        List<Product> selected = new ArrayList<>();
+        for (Product product : candidates) {
+            if (filter.matches(product)) {
+                selected.add(product);
+            }
+        }
+        if (candidates != listed && listingOrder != null) {
+            selected = listingOrder.sort(selected);
+        }
+        return selected;
+    }
+
+    /**
+     * Counts the products selected by a filter, without visiting the products.
+     *
+     * @param filter the filter to count products by
+     * @return the number of products selected
+     */
+    public int countProducts(ProductFilter filter) {
+        return facets().count(filter);
+    }
+
+    /**
+     * Counts the products selected by a filter under each value of a facet, without visiting the products.
+     * Only values with products are included.
+     *
+     * @param filter the filter to count products by
+     * @param facet  the facet to narrow the filter down by
+     * @return the number of products by facet value
+     */
+    public Map<String, Integer> getFacetCounts(ProductFilter filter, ProductFacet facet) {
+        return facets().counts(filter, facet);
+    }
+
+    /**
+     * Adds up the value of the stock on hand at full price.
+     *
+     * @return the total stock value in cents
+     */
+    public long getStockValueCents() {
+        return columns().stockValueCents();
     }
 
+    /**
+     * Finds the products with at most a given stock on hand, lowest stock first.
+     *
+     * @param threshold the highest stock on hand to include
+     * @return the products with low stock
+     */
+    public List<Product> getLowStockProducts(int threshold) {
+        return columns().lowStock(threshold);
+    }
 
+    /**
+     * Finds the products priced within a range.
+     *
+     * @param minPrice the lowest price to include
+     * @param maxPrice the highest price to include
+     * @return the products in the price range
+     */
+    public List<Product> getProductsInPriceRange(double minPrice, double maxPrice) {
+        return columns().priceRange(Math.round(minPrice * 100), Math.round(maxPrice * 100));
+    }
+
+    /**
+     * Adds up the stock on hand of each category.
+     *
+     * @return the stock on hand by category name
+     */
+    public Map<String, Integer> getStockByCategory() {
+        return columns().stockByCategory();
+    }
+
+    /**
+     * Adds up the stock on hand of each brand.
+     *
+     * @return the stock on hand by brand name
+     */
+    public Map<String, Integer> getStockByBrand() {
+        return columns().stockByBrand();
+    }
+
+    /**
+     * Stops keeping the stock reports and facet counts up to date and counting stock changes, for an inventory
+     * which is being replaced. They are rebuilt if they are used again.
+     */
+    public synchronized void release() {
+        if (stockChanges != null) {
+            for (Product product : products) {
+                product.getStock().removeListener(stockChanges);
+            }
+            stockChanges = null;
+        }
+        if (columns != null) {
+            columns.clear();
+            columns = null;
+        }
+        if (facets != null) {
+            facets.clear();
+            facets = null;
+        }
+    }
+
+    // built on first use under the writers' lock, so inventories which are never reported on do not follow
+    // their products' stock; once built it is read without locking
+    private ProductColumns columns() {
+        ProductColumns built = columns;
+        if (built != null) {
+            return built;
+        }
+        synchronized (this) {
+            if (columns == null) {
+                built = new ProductColumns();
+                for (Product product : products) {
+                    built.add(product);
+                }
+                columns = built;
+            }
+            return columns;
+        }
+    }
+
+    // built on first use under the writers' lock, so no change is missed while it is built; once built it is
+    // read without locking
+    private ProductSearchIndex searchIndex() {
+        ProductSearchIndex index = searchIndex;
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            if (searchIndex == null) {
+                index = new ProductSearchIndex();
+                for (Product product : products) {
+                    index.add(product);
+                }
+                searchIndex = index;
+            }
+            return searchIndex;
+        }
+    }
+
+    // built on first use like the search index
+    private StockChanges stockChanges() {
+        StockChanges changes = stockChanges;
+        if (changes != null) {
+            return changes;
+        }
+        synchronized (this) {
+            if (stockChanges == null) {
+                changes = new StockChanges();
+                for (Product product : products) {
+                    product.getStock().addListener(changes);
+                }
+                stockChanges = changes;
+            }
+            return stockChanges;
+        }
+    }
+
+    // built on first use like the search index
+    private ProductFacets facets() {
+        ProductFacets counts = facets;
+        if (counts != null) {
+            return counts;
+        }
+        synchronized (this) {
+            if (facets == null) {
+                counts = new ProductFacets();
+                for (Product product : products) {
+                    counts.add(product);
+                }
+                facets = counts;
+            }
+            return facets;
+        }
+    }
+
+    // position in a listing after the last product which sorts before or equal to the given one
+    private int insertionPoint(ProductList listed, Product product) {
+        if (maintainedOrder == null) {
+            return listed.size();
+        }
+        int low = 0;
+        int high = listed.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maintainedOrder.compare(listed.get(mid), product) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // position of a product in a list sorted by an order, if any, and then by listing sequence; if the product
+    // is not in the list, -(position + 1) of where it would be inserted
+    private int search(List<Product> listed, Product product, Comparator<Product> order) {
+        long sequence = sequences.get(product);
+        int low = 0;
+        int high = listed.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Product other = listed.get(mid);
+            int compared = order == null ? 0 : order.compare(other, product);
+            if (compared == 0) {
+                compared = Long.compare(sequences.get(other), sequence);
+            }
+            if (compared < 0) {
+                low = mid + 1;
+            } else if (compared > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void index(Product product, long sequence) {
+        sequences.put(product, sequence);
+        String[] keys = indexKeys(product);
+        // keep the first product registered under a duplicate key
+        productsByKey.putIfAbsent(keys[0], product);
+        productsById.put(product.getId(), product);
+        addToBucket(productsByBrand, keys[1], product);
+        addToBucket(productsByCategory, keys[2], product);
+        addToBucket(productsBySubCategory, keys[3], product);
+        indexedKeys.put(product, keys);
+    }
+
+    // the key, brand, category and sub-category a product is indexed under
+    private static String[] indexKeys(Product product) {
+        return new String[]{product.getKey(), normalise(product.getBrand()), normalise(product.getCategory()),
+                subCategoryKey(product.getCategory(), product.getSubCategory())};
+    }
+
+    private void unindex(Product product) {
+        String[] keys = indexedKeys.remove(product);
+        if (keys == null) {
+            return;
+        }
+        removeFromBucket(productsByBrand, keys[1], product);
+        if (productsByKey.remove(keys[0], product)) {
+            // promote a duplicate of the removed product, which can only share its brand bucket
+            for (Product other : lookup(productsByBrand, keys[1])) {
+                if (other.getKey().equals(keys[0])) {
+                    productsByKey.put(keys[0], other);
+                    break;
+                }
+            }
+        }
+        productsById.remove(product.getId(), product);
+        removeFromBucket(productsByCategory, keys[2], product);
+        removeFromBucket(productsBySubCategory, keys[3], product);
+        sequences.remove(product);
+    }
+
+    private static ConcurrentHashMap<String, ProductList> buckets(HashMap<String, ArrayList<Product>> lists) {
+        ConcurrentHashMap<String, ProductList> index = new ConcurrentHashMap<>();
+        lists.forEach((key, products) -> index.put(key, ProductList.of(products)));
+        return index;
+    }
+
+    // buckets are replaced rather than changed, as readers may be iterating over them
+    private static void appendToBuckets(ConcurrentHashMap<String, ProductList> index,
+                                        HashMap<String, ArrayList<Product>> added) {
+        added.forEach((key, products) -> {
+            ArrayList<Product> bucket = new ArrayList<>(index.getOrDefault(key, ProductList.EMPTY));
+            bucket.addAll(products);
+            index.put(key, ProductList.of(bucket));
+        });
+    }
+
+    private void addToBucket(ConcurrentHashMap<String, ProductList> index, String key, Product product) {
+        ProductList bucket = index.getOrDefault(key, ProductList.EMPTY);
+        index.put(key, bucket.inserted(-search(bucket, product, null) - 1, product));
+    }
+
+    private void removeFromBucket(ConcurrentHashMap<String, ProductList> index, String key, Product product) {
+        ProductList bucket = index.get(key);
+        int position = bucket == null ? -1 : search(bucket, product, null);
+        if (position < 0) {
+            return;
+        }
+        if (bucket.size() == 1) {
+            index.remove(key);
+        } else {
+            index.put(key, bucket.removed(position));
+        }
+    }
+
+    private static Collection<Product> lookup(ConcurrentHashMap<String, ProductList> index, String key) {
+        return index.getOrDefault(key, ProductList.EMPTY);
+    }
+
+    private static String normalise(String value) {
+        return value.trim().toLowerCase();
+    }
+
+    private static String subCategoryKey(String category, String subCategory) {
+        return normalise(category) + "|" + normalise(subCategory);
+    }
 }
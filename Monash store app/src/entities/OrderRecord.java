@@ -0,0 +1,139 @@
+package entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class which stores a placed order as it is kept in the order ledger of the Monash Merchant Application.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class OrderRecord {
+    private final long orderNumber;
+    private final long timestamp;
+    private final String email;
+    private final double total;
+    private final List<Line> lines;
+
+    /**
+     * One product of an order.
+     */
+    public static class Line {
+        private final String productKey;
+        private final int quantity;
+        private final double price;
+
+        /**
+         * Parameterized constructor.
+         *
+         * @param productKey the key of the ordered product
+         * @param quantity   the quantity ordered
+         * @param price      the price of one unit when the order was placed
+         */
+        public Line(String productKey, int quantity, double price) {
+            this.productKey = productKey;
+            this.quantity = quantity;
+            this.price = price;
+        }
+
+        /**
+         * Returns the key of the ordered product.
+         *
+         * @return the product key
+         */
+        public String getProductKey() {
+            return productKey;
+        }
+
+        /**
+         * Returns the quantity ordered.
+         *
+         * @return the quantity
+         */
+        public int getQuantity() {
+            return quantity;
+        }
+
+        /**
+         * Returns the price of one unit when the order was placed.
+         *
+         * @return the unit price
+         */
+        public double getPrice() {
+            return price;
+        }
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param orderNumber the number of the order
+     * @param timestamp   when the order was placed, in milliseconds since the epoch
+     * @param email       the email of the customer who placed the order
+     * @param total       the total price of the order
+     * @param lines       the products of the order
+     */
+    public OrderRecord(long orderNumber, long timestamp, String email, double total, List<Line> lines) {
+        this.orderNumber = orderNumber;
+        this.timestamp = timestamp;
+        this.email = email;
+        this.total = total;
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+    }
+
+    /**
+     * Returns the number of the order.
+     *
+     * @return the order number
+     */
+    public long getOrderNumber() {
+        return orderNumber;
+    }
+
+    /**
+     * Returns when the order was placed.
+     *
+     * @return the timestamp in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the email of the customer who placed the order.
+     *
+     * @return the customer email
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * Returns the total price of the order.
+     *
+     * @return the total price
+     */
+    public double getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the products of the order.
+     *
+     * @return the order lines
+     */
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns a readable summary of the order.
+     *
+     * @return the order number, customer, number of products and total
+     */
+    public String toString() {
+        return String.format("Order %d: %s, %d products, total %.2f", orderNumber, email, lines.size(), total);
+    }
+}
@@ -1,5 +1,9 @@
 package entities;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Product entity class.
  * Represent a product in Monash Merchant System.
@@ -8,27 +12,41 @@ package entities;
  * @version 5/16/2024
  */
 public class Product {
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+    // shared by the product and every edited copy of it, so it names the product across edits
+    private final long id;
     private String productName;
     private String brand;
     private String category;
     private String subCategory;
     private double price;
     private double memberPrice;
-    private int quantity;
+    // the prices in whole cents, rounded as %.2f rounds them, kept so that rendering and carts need not round
+    private long priceCents;
+    private long memberPriceCents;
+    private final StockLevel stock;
     private String description;
+    // the product this is an edited copy of, and its stock on hand when copied; null and 0 for other products
+    private final Product copiedFrom;
+    private final int copiedQuantity;
 
     /**
      * Default constructor.
      */
     public Product() {
+        this.id = NEXT_ID.incrementAndGet();
         this.productName = "";
         this.brand = "";
         this.category = "";
         this.subCategory = "";
         this.price = 0;
         this.memberPrice = 0;
-        this.quantity = 0;
+        this.priceCents = 0;
+        this.memberPriceCents = 0;
+        this.stock = new StockLevel(0);
         this.description = "";
+        this.copiedFrom = null;
+        this.copiedQuantity = 0;
     }
 
     /**
@@ -44,14 +62,84 @@ public class Product {
      * @param description the description of the product
      */
     public Product(String productName, String brand, String category, String subCategory, double price, double memberPrice, int quantity, String description) {
+        this.id = NEXT_ID.incrementAndGet();
         this.productName = productName;
         this.brand = brand;
         this.category = category;
         this.subCategory = subCategory;
         this.price = price;
         this.memberPrice = memberPrice;
-        this.quantity = quantity;
+        this.priceCents = toCents(price);
+        this.memberPriceCents = toCents(memberPrice);
+        this.stock = new StockLevel(quantity);
         this.description = description;
+        this.copiedFrom = null;
+        this.copiedQuantity = 0;
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param product    the product to copy
+     * @param stock      the stock level of the copy
+     * @param copiedFrom the product the copy is to be edited from, or null if it is not an edited copy
+     */
+    private Product(Product product, StockLevel stock, Product copiedFrom) {
+        this.id = product.id;
+        this.productName = product.productName;
+        this.brand = product.brand;
+        this.category = product.category;
+        this.subCategory = product.subCategory;
+        this.price = product.price;
+        this.memberPrice = product.memberPrice;
+        this.priceCents = product.priceCents;
+        this.memberPriceCents = product.memberPriceCents;
+        this.stock = stock;
+        this.description = product.description;
+        this.copiedFrom = copiedFrom;
+        this.copiedQuantity = copiedFrom == null ? 0 : stock.getOnHand();
+    }
+
+    /**
+     * Returns a copy of the product to edit, leaving the product unchanged for anyone still reading it.
+     * The copy has a stock level of its own, starting at this product's stock on hand, so setting its
+     * quantity changes nothing until it is published.
+     *
+     * @return the copy
+     */
+    public Product copy() {
+        return new Product(this, new StockLevel(getQuantity()), this);
+    }
+
+    /**
+     * Returns the product to replace the product this was copied from: this product's fields with that
+     * product's stock level, so stock held in carts and sold while this copy was edited is not lost.
+     * A quantity set on the copy is not applied; see {@link #isQuantityEdited()}.
+     *
+     * @return the product to publish, or this product if it is not an edited copy
+     */
+    public Product publish() {
+        return copiedFrom == null ? this : new Product(this, copiedFrom.stock, null);
+    }
+
+    /**
+     * Returns whether the quantity of this edited copy was set to something other than the stock on hand
+     * it was copied with.
+     *
+     * @return true if the quantity should be applied to the published product
+     */
+    public boolean isQuantityEdited() {
+        return copiedFrom != null && getQuantity() != copiedQuantity;
+    }
+
+    /**
+     * Returns the id of the product. Ids are given out as products are created and kept by edited copies,
+     * so a product keeps its id when it is edited, even if its name or brand changes.
+     *
+     * @return the product id
+     */
+    public long getId() {
+        return id;
     }
 
     /**
@@ -142,6 +230,7 @@ public class Product {
      */
     public void setMemberPrice(double memberPrice) {
         this.memberPrice = memberPrice;
+        this.memberPriceCents = toCents(memberPrice);
     }
 
     /**
@@ -160,24 +249,61 @@ public class Product {
      */
     public void setPrice(double price) {
         this.price = price;
+        this.priceCents = toCents(price);
+    }
+
+    /**
+     * Return the price of the product in whole cents, rounded as the price is shown and saved with %.2f.
+     *
+     * @return the price rounded to the nearest cent
+     */
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    /**
+     * Return the member price of the product in whole cents, rounded as the price is shown and saved with %.2f.
+     *
+     * @return the member price rounded to the nearest cent
+     */
+    public long getMemberPriceCents() {
+        return memberPriceCents;
     }
 
     /**
-     * Return the quantity of the product.
+     * Return the quantity of the product on hand, including stock reserved in carts.
      *
      * @return the quantity
      */
     public int getQuantity() {
-        return quantity;
+        return stock.getOnHand();
     }
 
     /**
-     * Sets the quantity of the product.
+     * Sets the quantity of the product on hand, or the quantity reserved in carts if that is more.
      *
      * @param quantity the quantity to set
      */
     public void setQuantity(int quantity) {
-        this.quantity = quantity;
+        stock.setOnHand(quantity);
+    }
+
+    /**
+     * Return the quantity of the product which is not reserved in a cart.
+     *
+     * @return the available quantity
+     */
+    public int getAvailableQuantity() {
+        return stock.getAvailable();
+    }
+
+    /**
+     * Return the stock level of the product, used to reserve and commit stock.
+     *
+     * @return the stock level
+     */
+    public StockLevel getStock() {
+        return stock;
     }
 
     /**
@@ -198,6 +324,26 @@ public class Product {
         this.description = description;
     }
 
+    /**
+     * Returns the key which identifies this product within the inventory.
+     *
+     * @return the product key built from the product name and brand
+     */
+    public String getKey() {
+        return keyOf(productName, brand);
+    }
+
+    /**
+     * Builds the inventory key for a product name and brand. Keys are case-insensitive.
+     *
+     * @param productName the name of the product
+     * @param brand       the brand of the product
+     * @return the product key
+     */
+    public static String keyOf(String productName, String brand) {
+        return productName.trim().toLowerCase() + "|" + brand.trim().toLowerCase();
+    }
+
     /**
      * Returns a string representation of the product object.
      *
@@ -211,7 +357,7 @@ public class Product {
         str += "Sub Category: " + subCategory + ", ";
         str += "Price: " + price + ", ";
         str += "Member Price: " + memberPrice + ", ";
-        str += "Quantity: " + quantity + ", ";
+        str += "Quantity: " + getQuantity() + ", ";
         str += "Description: " + description + ", ";
         return (str);
     }
@@ -231,4 +377,13 @@ public class Product {
     public String toStringForFileIO() {
         return String.format("%s,%s,%s,%s,%.2f,%.2f,%d,%s", getProductName(), getBrand(), getCategory(), getSubCategory(), getPrice(), getMemberPrice(), getQuantity(), getDescription());
     }
-}
\ No newline at end of file
+
+    // rounds half up from the shortest decimal form of the amount, as %.2f does, so 1.005 is 101 cents; the
+    // product of the amount and 100, 100.49999999999999, would round down
+    private static long toCents(double amount) {
+        if (!Double.isFinite(amount)) {
+            return Math.round(amount * 100);
+        }
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+}
@@ -0,0 +1,330 @@
+package entities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Columnar copy of the fields of an inventory's products which reports scan.
+ * Each product has a slot, and its price, stock on hand, category and brand are kept in primitive
+ * arrays at that slot, with the category and brand stored as ids into a dictionary of names. Slots are
+ * packed, so a scan reads each column from start to end instead of visiting every Product object.
+ * Removing a product clears its slot in place, and scans skip cleared slots; once half the slots are
+ * cleared, the live ones are copied into new arrays, so a removal costs a constant amount on average
+ * rather than a copy of the catalog. Stock on hand is kept up to date by listening to each product's
+ * StockLevel, as orders change it without going through the inventory.
+ * Adding and removing products is locked, and publishes a new version of the columns; scans read the
+ * version current when they start without locking. Stock on hand is kept in an atomic array which the
+ * listener writes without locking, so stock changes to different products never wait for each other.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+class ProductColumns implements StockListener {
+    private static final int INITIAL_CAPACITY = 64;
+    private final Dictionary categories = new Dictionary();
+    private final Dictionary brands = new Dictionary();
+    // slot of each product in the current version; changed under the lock before the version is published
+    private final ConcurrentHashMap<StockLevel, Integer> slots = new ConcurrentHashMap<>();
+    // cleared slots below the size of the current version; only read and changed under the lock
+    private int cleared;
+    private volatile Columns columns = new Columns(new Product[INITIAL_CAPACITY], new long[INITIAL_CAPACITY],
+            new AtomicIntegerArray(INITIAL_CAPACITY), new int[INITIAL_CAPACITY], new int[INITIAL_CAPACITY], 0,
+            categories, brands);
+
+    /**
+     * Names encoded as consecutive ids. Names are matched ignoring case and surrounding spaces, and are
+     * reported as first seen. Ids are only given out under the columns' lock; the array of names is
+     * replaced when it is full, so a version of the columns can keep the array it was published with.
+     */
+    private static class Dictionary {
+        private final HashMap<String, Integer> ids = new HashMap<>();
+        private String[] names = new String[16];
+        private int size;
+
+        private int idOf(String name) {
+            String key = name.trim().toLowerCase();
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = size;
+                ids.put(key, id);
+                if (size == names.length) {
+                    names = Arrays.copyOf(names, size * 2);
+                }
+                names[size++] = name.trim();
+            }
+            return id;
+        }
+    }
+
+    /**
+     * One version of the columns. Slots below the size are never changed once published, except for stock
+     * on hand and the product of a removed slot, which is cleared to null; adding a product writes the slot
+     * after them in the same arrays and publishes a larger version, while dropping cleared slots or growing
+     * the arrays copies the live slots and retires this version.
+     */
+    private static class Columns {
+        private final Product[] products;
+        private final long[] priceCents;
+        private final AtomicIntegerArray quantities;
+        private final int[] categoryIds;
+        private final int[] brandIds;
+        private final int size;
+        private final String[] categoryNames;
+        private final int categoryCount;
+        private final String[] brandNames;
+        private final int brandCount;
+        // set before the arrays are copied into a new version, so a stock change written here after the copy
+        // is known to need writing again
+        private volatile boolean retired;
+
+        private Columns(Product[] products, long[] priceCents, AtomicIntegerArray quantities, int[] categoryIds,
+                        int[] brandIds, int size, Dictionary categories, Dictionary brands) {
+            this.products = products;
+            this.priceCents = priceCents;
+            this.quantities = quantities;
+            this.categoryIds = categoryIds;
+            this.brandIds = brandIds;
+            this.size = size;
+            this.categoryNames = categories.names;
+            this.categoryCount = categories.size;
+            this.brandNames = brands.names;
+            this.brandCount = brands.size;
+        }
+
+        // writes the stock on hand to a slot until it is still current once written, as another thread may
+        // be writing an older reading to the same slot; false if the slot is not in these arrays
+        private boolean update(Integer slot, StockLevel stock) {
+            if (slot == null) {
+                return true;
+            }
+            if (slot >= quantities.length()) {
+                return false;
+            }
+            int quantity;
+            do {
+                quantity = stock.getOnHand();
+                quantities.set(slot, quantity);
+            } while (stock.getOnHand() != quantity);
+            return true;
+        }
+    }
+
+    /**
+     * Adds a product in a new slot and starts following its stock.
+     *
+     * @param product the product to add
+     */
+    synchronized void add(Product product) {
+        StockLevel stock = product.getStock();
+        if (slots.containsKey(stock)) {
+            return;
+        }
+        Columns current = columns;
+        if (current.size == current.products.length) {
+            current = compact(Math.max(INITIAL_CAPACITY, (current.size - cleared) * 2));
+        }
+        int slot = current.size;
+        current.products[slot] = product;
+        current.priceCents[slot] = product.getPriceCents();
+        current.categoryIds[slot] = categories.idOf(product.getCategory());
+        current.brandIds[slot] = brands.idOf(product.getBrand());
+        // listen before reading the stock, so a change made while adding is not missed
+        slots.put(stock, slot);
+        stock.addListener(this);
+        current.update(slot, stock);
+        columns = new Columns(current.products, current.priceCents, current.quantities, current.categoryIds,
+                current.brandIds, slot + 1, categories, brands);
+    }
+
+    /**
+     * Removes a product, clearing its slot, and drops the cleared slots once they are half of all slots.
+     *
+     * @param product the product to remove
+     */
+    synchronized void remove(Product product) {
+        Integer slot = slots.remove(product.getStock());
+        if (slot == null) {
+            return;
+        }
+        product.getStock().removeListener(this);
+        Columns current = columns;
+        current.products[slot] = null;
+        cleared++;
+        if (cleared * 2 > current.size) {
+            compact(current.products.length);
+        } else {
+            // published again, so scans which start later see the slot cleared
+            columns = new Columns(current.products, current.priceCents, current.quantities, current.categoryIds,
+                    current.brandIds, current.size, categories, brands);
+        }
+    }
+
+    /**
+     * Removes every product and stops following their stock.
+     */
+    synchronized void clear() {
+        Columns current = columns;
+        for (int slot = 0; slot < current.size; slot++) {
+            if (current.products[slot] != null) {
+                current.products[slot].getStock().removeListener(this);
+            }
+        }
+        slots.clear();
+        cleared = 0;
+        current.retired = true;
+        columns = new Columns(new Product[INITIAL_CAPACITY], new long[INITIAL_CAPACITY],
+                new AtomicIntegerArray(INITIAL_CAPACITY), new int[INITIAL_CAPACITY], new int[INITIAL_CAPACITY], 0,
+                categories, brands);
+    }
+
+    @Override
+    public void onHandChanged(StockLevel stock) {
+        Columns current = columns;
+        if (!current.update(slots.get(stock), stock) || current.retired || columns != current) {
+            // a newer version may have copied the arrays before the write; once the lock is held the latest
+            // version is published and its slots stay put
+            synchronized (this) {
+                columns.update(slots.get(stock), stock);
+            }
+        }
+    }
+
+    /**
+     * Adds up the value of the stock on hand at full price.
+     *
+     * @return the total stock value in cents
+     */
+    long stockValueCents() {
+        Columns current = columns;
+        long total = 0;
+        for (int slot = 0; slot < current.size; slot++) {
+            if (current.products[slot] != null) {
+                total += current.priceCents[slot] * current.quantities.get(slot);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Finds the products with at most a given stock on hand, lowest stock first.
+     *
+     * @param threshold the highest stock on hand to include
+     * @return the products with low stock
+     */
+    List<Product> lowStock(int threshold) {
+        Columns current = columns;
+        // sort the matching slots by quantity, packing the quantity above the slot number
+        long[] ordered = new long[current.size];
+        int count = 0;
+        for (int slot = 0; slot < current.size; slot++) {
+            int quantity = current.quantities.get(slot);
+            if (quantity <= threshold && current.products[slot] != null) {
+                ordered[count++] = ((long) quantity << 32) | slot;
+            }
+        }
+        Arrays.sort(ordered, 0, count);
+        List<Product> found = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // read again, as the product may have been removed since
+            Product product = current.products[(int) ordered[i]];
+            if (product != null) {
+                found.add(product);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the products priced within a range.
+     *
+     * @param minCents the lowest price to include, in cents
+     * @param maxCents the highest price to include, in cents
+     * @return the products in the price range
+     */
+    List<Product> priceRange(long minCents, long maxCents) {
+        Columns current = columns;
+        List<Product> found = new ArrayList<>();
+        for (int slot = 0; slot < current.size; slot++) {
+            Product product = current.products[slot];
+            if (current.priceCents[slot] >= minCents && current.priceCents[slot] <= maxCents && product != null) {
+                found.add(product);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds up the stock on hand of each category.
+     *
+     * @return the stock on hand by category name, in the order categories were first seen
+     */
+    Map<String, Integer> stockByCategory() {
+        Columns current = columns;
+        return totals(current, current.categoryIds, current.categoryNames, current.categoryCount);
+    }
+
+    /**
+     * Adds up the stock on hand of each brand.
+     *
+     * @return the stock on hand by brand name, in the order brands were first seen
+     */
+    Map<String, Integer> stockByBrand() {
+        Columns current = columns;
+        return totals(current, current.brandIds, current.brandNames, current.brandCount);
+    }
+
+    // copies the live slots of the current version into new arrays, in order, and publishes them; the current
+    // version is retired first, so a stock change written to it after its slot is copied is written again
+    private Columns compact(int capacity) {
+        Columns current = columns;
+        current.retired = true;
+        Product[] products = new Product[capacity];
+        long[] priceCents = new long[capacity];
+        AtomicIntegerArray quantities = new AtomicIntegerArray(capacity);
+        int[] categoryIds = new int[capacity];
+        int[] brandIds = new int[capacity];
+        int size = 0;
+        for (int slot = 0; slot < current.size; slot++) {
+            Product product = current.products[slot];
+            if (product == null) {
+                continue;
+            }
+            products[size] = product;
+            priceCents[size] = current.priceCents[slot];
+            quantities.set(size, current.quantities.get(slot));
+            categoryIds[size] = current.categoryIds[slot];
+            brandIds[size] = current.brandIds[slot];
+            if (size != slot) {
+                slots.put(product.getStock(), size);
+            }
+            size++;
+        }
+        cleared = 0;
+        columns = new Columns(products, priceCents, quantities, categoryIds, brandIds, size, categories, brands);
+        return columns;
+    }
+
+    private static Map<String, Integer> totals(Columns current, int[] ids, String[] names, int count) {
+        int[] totals = new int[count];
+        boolean[] present = new boolean[count];
+        for (int slot = 0; slot < current.size; slot++) {
+            if (current.products[slot] != null) {
+                totals[ids[slot]] += current.quantities.get(slot);
+                present[ids[slot]] = true;
+            }
+        }
+        Map<String, Integer> byName = new LinkedHashMap<>();
+        for (int id = 0; id < count; id++) {
+            if (present[id]) {
+                byName.put(names[id], totals[id]);
+            }
+        }
+        return byName;
+    }
+}
@@ -0,0 +1,28 @@
+package entities;
+
+/**
+ * Fields of a Product which the catalog can be narrowed down by.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public enum ProductFacet {
+    CATEGORY("Category"),
+    SUB_CATEGORY("Sub-category"),
+    BRAND("Brand");
+
+    private final String label;
+
+    ProductFacet(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the name of the facet as shown to users.
+     *
+     * @return the facet label
+     */
+    public String getLabel() {
+        return label;
+    }
+}
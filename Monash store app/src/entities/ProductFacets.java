@@ -0,0 +1,248 @@
+package entities;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Product counts for every filter an inventory can be narrowed down by.
+ * A product is counted under each combination of its category, sub-category and brand that a filter can
+ * select, six in all, and under each facet value those filters can be narrowed down by next. Counts are
+ * kept both of all products and of products in stock, and are adjusted as products are added, edited and
+ * removed and as their stock on hand changes, so no query has to visit the products.
+ * Adding and removing products is locked; stock changes and queries are not. Whether a product is counted
+ * as in stock is changed with a compare-and-set, and the in-stock counts are adders, so stock changes to
+ * different products never wait for each other. The values of a facet are replaced rather than changed,
+ * so a query reads the values current when it starts.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+class ProductFacets implements StockListener {
+    // stands for a facet the filter does not select by
+    private static final String ANY = "\0";
+    private static final int OUT_OF_STOCK = 0;
+    private static final int IN_STOCK = 1;
+    private static final int REMOVED = 2;
+    private final ConcurrentHashMap<String, Count> totals = new ConcurrentHashMap<>();
+    // counts by facet value, by filter and facet
+    private final ConcurrentHashMap<String, Map<String, Count>> facets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<StockLevel, Counted> counted = new ConcurrentHashMap<>();
+
+    /**
+     * Number of products under one filter or facet value. The number of products is only changed under the
+     * lock; the number in stock is changed by stock listeners without it.
+     */
+    private static class Count {
+        private final String facetKey;
+        private final String key;
+        private final String name;
+        private volatile int products;
+        private final LongAdder inStock = new LongAdder();
+
+        private Count(String facetKey, String key, String name) {
+            this.facetKey = facetKey;
+            this.key = key;
+            this.name = name;
+        }
+    }
+
+    /**
+     * The counts a product is included in, and whether it was in stock when last counted or has been removed.
+     */
+    private static class Counted {
+        private final Count[] counts;
+        private final AtomicInteger state;
+
+        private Counted(Count[] counts, int state) {
+            this.counts = counts;
+            this.state = new AtomicInteger(state);
+        }
+    }
+
+    /**
+     * Adds a product to the counts and starts following its stock.
+     *
+     * @param product the product to add
+     */
+    synchronized void add(Product product) {
+        StockLevel stock = product.getStock();
+        if (counted.containsKey(stock)) {
+            return;
+        }
+        Counted entry = new Counted(countsOf(product), OUT_OF_STOCK);
+        for (Count count : entry.counts) {
+            count.products++;
+        }
+        // listen once counted, then catch up with the stock, so a change made while adding is not missed
+        counted.put(stock, entry);
+        stock.addListener(this);
+        follow(entry, stock);
+    }
+
+    /**
+     * Removes a product from the counts and stops following its stock.
+     *
+     * @param product the product to remove
+     */
+    synchronized void remove(Product product) {
+        Counted entry = counted.remove(product.getStock());
+        if (entry == null) {
+            return;
+        }
+        product.getStock().removeListener(this);
+        // a listener still running sees the product removed and leaves its counts alone
+        boolean inStock = entry.state.getAndSet(REMOVED) == IN_STOCK;
+        for (Count count : entry.counts) {
+            count.products--;
+            if (inStock) {
+                count.inStock.decrement();
+            }
+            if (count.products == 0) {
+                unlink(count);
+            }
+        }
+    }
+
+    /**
+     * Removes every product and stops following their stock.
+     */
+    synchronized void clear() {
+        for (Map.Entry<StockLevel, Counted> entry : counted.entrySet()) {
+            entry.getKey().removeListener(this);
+            entry.getValue().state.set(REMOVED);
+        }
+        counted.clear();
+        totals.clear();
+        facets.clear();
+    }
+
+    @Override
+    public void onHandChanged(StockLevel stock) {
+        Counted entry = counted.get(stock);
+        if (entry != null) {
+            follow(entry, stock);
+        }
+    }
+
+    /**
+     * Counts the products selected by a filter.
+     *
+     * @param filter the filter
+     * @return the number of products selected
+     */
+    int count(ProductFilter filter) {
+        Count count = totals.get(filterKey(normalise(filter.getCategory()), normalise(filter.getSubCategory()),
+                normalise(filter.getBrand())));
+        return count == null ? 0 : filter.isInStockOnly() ? count.inStock.intValue() : count.products;
+    }
+
+    /**
+     * Counts the products selected by a filter under each value of a facet it can be narrowed down by.
+     *
+     * @param filter the filter
+     * @param facet  the facet
+     * @return the number of products selected by each value with any, in the order values were first seen
+     */
+    Map<String, Integer> counts(ProductFilter filter, ProductFacet facet) {
+        Map<String, Integer> byValue = new LinkedHashMap<>();
+        Map<String, Count> values = facets.get(facetKey(filterKey(normalise(filter.getCategory()),
+                normalise(filter.getSubCategory()), normalise(filter.getBrand())), facet));
+        if (values == null) {
+            return byValue;
+        }
+        for (Count count : values.values()) {
+            int products = filter.isInStockOnly() ? count.inStock.intValue() : count.products;
+            if (products > 0) {
+                byValue.put(count.name, products);
+            }
+        }
+        return byValue;
+    }
+
+    // moves the product in or out of the in-stock counts until how it is counted matches a reading of the
+    // stock taken after the move, as another thread may be acting on an older reading
+    private static void follow(Counted entry, StockLevel stock) {
+        while (true) {
+            int state = entry.state.get();
+            int now = stock.getOnHand() > 0 ? IN_STOCK : OUT_OF_STOCK;
+            if (state == now || state == REMOVED) {
+                return;
+            }
+            if (entry.state.compareAndSet(state, now)) {
+                for (Count count : entry.counts) {
+                    count.inStock.add(now == IN_STOCK ? 1 : -1);
+                }
+            }
+        }
+    }
+
+    // every count which includes the product: the six filters selecting it and the facet values under them
+    private Count[] countsOf(Product product) {
+        String category = normalise(product.getCategory());
+        String subCategory = normalise(product.getSubCategory());
+        String brand = normalise(product.getBrand());
+        String[][] filters = {
+                {ANY, ANY, ANY}, {category, ANY, ANY}, {category, subCategory, ANY},
+                {ANY, ANY, brand}, {category, ANY, brand}, {category, subCategory, brand}
+        };
+        Count[] counts = new Count[15];
+        int size = 0;
+        for (String[] filter : filters) {
+            String key = filterKey(filter[0], filter[1], filter[2]);
+            counts[size++] = totals.computeIfAbsent(key, k -> new Count(null, key, key));
+            if (filter[0].equals(ANY)) {
+                counts[size++] = facetCountOf(key, ProductFacet.CATEGORY, category, product.getCategory());
+            } else if (filter[1].equals(ANY)) {
+                counts[size++] = facetCountOf(key, ProductFacet.SUB_CATEGORY, subCategory, product.getSubCategory());
+            }
+            if (filter[2].equals(ANY)) {
+                counts[size++] = facetCountOf(key, ProductFacet.BRAND, brand, product.getBrand());
+            }
+        }
+        return Arrays.copyOf(counts, size);
+    }
+
+    // the values of a facet are copied to add one, as queries may be reading them
+    private Count facetCountOf(String filterKey, ProductFacet facet, String value, String name) {
+        String key = facetKey(filterKey, facet);
+        Map<String, Count> values = facets.getOrDefault(key, Map.of());
+        Count count = values.get(value);
+        if (count == null) {
+            LinkedHashMap<String, Count> added = new LinkedHashMap<>(values);
+            count = new Count(key, value, name.trim());
+            added.put(value, count);
+            facets.put(key, added);
+        }
+        return count;
+    }
+
+    private void unlink(Count count) {
+        if (count.facetKey == null) {
+            totals.remove(count.key);
+            return;
+        }
+        LinkedHashMap<String, Count> values = new LinkedHashMap<>(facets.get(count.facetKey));
+        values.remove(count.key);
+        if (values.isEmpty()) {
+            facets.remove(count.facetKey);
+        } else {
+            facets.put(count.facetKey, values);
+        }
+    }
+
+    private static String filterKey(String category, String subCategory, String brand) {
+        return category + "|" + subCategory + "|" + brand;
+    }
+
+    private static String facetKey(String filterKey, ProductFacet facet) {
+        return filterKey + "|" + facet.name();
+    }
+
+    private static String normalise(String value) {
+        return value == null ? ANY : value.trim().toLowerCase();
+    }
+}
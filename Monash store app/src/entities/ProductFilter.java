@@ -0,0 +1,167 @@
+package entities;
+
+/**
+ * Selection of products by category, sub-category, brand and whether they are in stock, used to narrow
+ * down the catalog one facet at a time. Filters are immutable; each with method returns a new filter.
+ * A sub-category can only be selected within a category.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class ProductFilter {
+    /**
+     * The filter which selects every product.
+     */
+    public static final ProductFilter ALL = new ProductFilter(null, null, null, false);
+    private final String category;
+    private final String subCategory;
+    private final String brand;
+    private final boolean inStockOnly;
+
+    private ProductFilter(String category, String subCategory, String brand, boolean inStockOnly) {
+        this.category = category;
+        this.subCategory = subCategory;
+        this.brand = brand;
+        this.inStockOnly = inStockOnly;
+    }
+
+    /**
+     * Returns a filter which also selects by category, clearing any sub-category.
+     *
+     * @param category the category name
+     * @return the new filter
+     */
+    public ProductFilter withCategory(String category) {
+        return new ProductFilter(category, null, brand, inStockOnly);
+    }
+
+    /**
+     * Returns a filter which also selects by sub-category of the selected category.
+     *
+     * @param subCategory the sub-category name
+     * @return the new filter
+     * @throws IllegalStateException if no category is selected
+     */
+    public ProductFilter withSubCategory(String subCategory) {
+        if (category == null) {
+            throw new IllegalStateException("A category must be selected before a sub-category");
+        }
+        return new ProductFilter(category, subCategory, brand, inStockOnly);
+    }
+
+    /**
+     * Returns a filter which also selects by brand.
+     *
+     * @param brand the brand name
+     * @return the new filter
+     */
+    public ProductFilter withBrand(String brand) {
+        return new ProductFilter(category, subCategory, brand, inStockOnly);
+    }
+
+    /**
+     * Returns a filter which selects either only products in stock or products regardless of stock.
+     *
+     * @param inStockOnly true to select only products in stock
+     * @return the new filter
+     */
+    public ProductFilter withInStockOnly(boolean inStockOnly) {
+        return new ProductFilter(category, subCategory, brand, inStockOnly);
+    }
+
+    /**
+     * Returns a filter which selects by a facet.
+     *
+     * @param facet the facet to select by
+     * @param value the value of the facet
+     * @return the new filter
+     */
+    public ProductFilter with(ProductFacet facet, String value) {
+        switch (facet) {
+            case CATEGORY:
+                return withCategory(value);
+            case SUB_CATEGORY:
+                return withSubCategory(value);
+            default:
+                return withBrand(value);
+        }
+    }
+
+    /**
+     * Returns the selected category.
+     *
+     * @return the category, or null if any category is selected
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Returns the selected sub-category.
+     *
+     * @return the sub-category, or null if any sub-category is selected
+     */
+    public String getSubCategory() {
+        return subCategory;
+    }
+
+    /**
+     * Returns the selected brand.
+     *
+     * @return the brand, or null if any brand is selected
+     */
+    public String getBrand() {
+        return brand;
+    }
+
+    /**
+     * Returns whether only products in stock are selected.
+     *
+     * @return true if only products in stock are selected
+     */
+    public boolean isInStockOnly() {
+        return inStockOnly;
+    }
+
+    /**
+     * Checks whether the filter selects a product. Names are compared ignoring case and surrounding spaces.
+     *
+     * @param product the product to check
+     * @return true if the product is selected
+     */
+    public boolean matches(Product product) {
+        return (category == null || same(category, product.getCategory()))
+                && (subCategory == null || same(subCategory, product.getSubCategory()))
+                && (brand == null || same(brand, product.getBrand()))
+                && (!inStockOnly || product.getQuantity() > 0);
+    }
+
+    /**
+     * Returns a readable description of the filter.
+     *
+     * @return the selected facets, or "All products"
+     */
+    public String toString() {
+        StringBuilder description = new StringBuilder();
+        if (category != null) {
+            description.append("Category: ").append(category);
+            if (subCategory != null) {
+                description.append(" > ").append(subCategory);
+            }
+        }
+        if (brand != null) {
+            description.append(description.length() > 0 ? ", " : "").append("Brand: ").append(brand);
+        }
+        if (description.length() == 0) {
+            description.append("All products");
+        }
+        if (inStockOnly) {
+            description.append(" (in stock)");
+        }
+        return description.toString();
+    }
+
+    private static boolean same(String selected, String value) {
+        return selected.trim().equalsIgnoreCase(value.trim());
+    }
+}
@@ -0,0 +1,162 @@
+package entities;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of products, stored in chunks.
+ * Changing a list creates a new list which shares every chunk but the one changed, so a change copies
+ * one chunk and the array of chunk references rather than the whole list. A list can be read by any
+ * number of threads while newer versions are being made from it.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+final class ProductList extends AbstractList<Product> implements RandomAccess {
+    static final int CHUNK_SIZE = 64;
+    static final ProductList EMPTY = new ProductList(new Product[0][], new int[]{0});
+    private final Product[][] chunks;
+    // index of the first product of each chunk, followed by the size of the list
+    private final int[] starts;
+
+    private ProductList(Product[][] chunks, int[] starts) {
+        this.chunks = chunks;
+        this.starts = starts;
+    }
+
+    /**
+     * Creates a list of products.
+     *
+     * @param products the products, in order
+     * @return the ProductList
+     */
+    static ProductList of(List<Product> products) {
+        Product[] all = products.toArray(new Product[0]);
+        Product[][] chunks = new Product[(all.length + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = Arrays.copyOfRange(all, i * CHUNK_SIZE, Math.min(all.length, (i + 1) * CHUNK_SIZE));
+        }
+        return new ProductList(chunks, startsOf(chunks));
+    }
+
+    @Override
+    public Product get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        }
+        int chunk = chunkOf(index);
+        return chunks[chunk][index - starts[chunk]];
+    }
+
+    @Override
+    public int size() {
+        return starts[chunks.length];
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return new Iterator<Product>() {
+            private int chunk;
+            private int offset;
+
+            @Override
+            public boolean hasNext() {
+                return chunk < chunks.length;
+            }
+
+            @Override
+            public Product next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Product product = chunks[chunk][offset++];
+                if (offset == chunks[chunk].length) {
+                    chunk++;
+                    offset = 0;
+                }
+                return product;
+            }
+        };
+    }
+
+    /**
+     * Creates a list with a product inserted. A chunk which grows to twice the chunk size is split in two.
+     *
+     * @param index   the position to insert at
+     * @param product the product to insert
+     * @return the new list
+     */
+    ProductList inserted(int index, Product product) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        }
+        if (chunks.length == 0) {
+            return new ProductList(new Product[][]{{product}}, new int[]{0, 1});
+        }
+        int chunk = index == size() ? chunks.length - 1 : chunkOf(index);
+        int offset = index - starts[chunk];
+        Product[] old = chunks[chunk];
+        Product[] grown = new Product[old.length + 1];
+        System.arraycopy(old, 0, grown, 0, offset);
+        grown[offset] = product;
+        System.arraycopy(old, offset, grown, offset + 1, old.length - offset);
+        if (grown.length < 2 * CHUNK_SIZE) {
+            return replaceChunk(chunk, grown);
+        }
+        Product[][] split = new Product[chunks.length + 1][];
+        System.arraycopy(chunks, 0, split, 0, chunk);
+        split[chunk] = Arrays.copyOfRange(grown, 0, CHUNK_SIZE);
+        split[chunk + 1] = Arrays.copyOfRange(grown, CHUNK_SIZE, grown.length);
+        System.arraycopy(chunks, chunk + 1, split, chunk + 2, chunks.length - chunk - 1);
+        return new ProductList(split, startsOf(split));
+    }
+
+    /**
+     * Creates a list with the product at a position removed. A chunk left empty is dropped.
+     *
+     * @param index the position of the product to remove
+     * @return the new list
+     */
+    ProductList removed(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        }
+        int chunk = chunkOf(index);
+        int offset = index - starts[chunk];
+        Product[] old = chunks[chunk];
+        if (old.length > 1) {
+            Product[] shrunk = new Product[old.length - 1];
+            System.arraycopy(old, 0, shrunk, 0, offset);
+            System.arraycopy(old, offset + 1, shrunk, offset, old.length - offset - 1);
+            return replaceChunk(chunk, shrunk);
+        }
+        Product[][] fewer = new Product[chunks.length - 1][];
+        System.arraycopy(chunks, 0, fewer, 0, chunk);
+        System.arraycopy(chunks, chunk + 1, fewer, chunk, chunks.length - chunk - 1);
+        return new ProductList(fewer, startsOf(fewer));
+    }
+
+    private ProductList replaceChunk(int chunk, Product[] replacement) {
+        Product[][] copy = chunks.clone();
+        copy[chunk] = replacement;
+        return new ProductList(copy, startsOf(copy));
+    }
+
+    // the chunk holding a position; chunks are never empty, so starts is strictly increasing
+    private int chunkOf(int index) {
+        int found = Arrays.binarySearch(starts, 0, chunks.length, index);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private static int[] startsOf(Product[][] chunks) {
+        int[] starts = new int[chunks.length + 1];
+        for (int i = 0; i < chunks.length; i++) {
+            starts[i + 1] = starts[i] + chunks[i].length;
+        }
+        return starts;
+    }
+}
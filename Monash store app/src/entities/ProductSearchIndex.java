@@ -0,0 +1,151 @@
+package entities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Inverted index over the name, brand and description of an inventory's products.
+ * Each field is split into lower-case words, and each word maps to the products containing it with a
+ * weight for the fields it appears in. Words are kept sorted, so a query word matches every indexed word
+ * it is a prefix of by reading one range of the index. Products must match every query word, and are
+ * ranked by the sum of their weights, with whole-word matches counting double. Products are added and
+ * removed by one thread at a time, and the index is searched without locking while they are.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+class ProductSearchIndex {
+    private static final int NAME_WEIGHT = 4;
+    private static final int BRAND_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private final ConcurrentSkipListMap<String, ConcurrentHashMap<Product, Integer>> postings =
+            new ConcurrentSkipListMap<>();
+    // words each product was indexed under, so it can be removed after its fields change
+    private final IdentityHashMap<Product, String[]> indexedWords = new IdentityHashMap<>();
+
+    /**
+     * Adds a product to the index.
+     *
+     * @param product the product to add
+     */
+    void add(Product product) {
+        if (indexedWords.containsKey(product)) {
+            return;
+        }
+        HashMap<String, Integer> weights = new HashMap<>();
+        addWords(weights, product.getProductName(), NAME_WEIGHT);
+        addWords(weights, product.getBrand(), BRAND_WEIGHT);
+        addWords(weights, product.getDescription(), DESCRIPTION_WEIGHT);
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>()).put(product, entry.getValue());
+        }
+        indexedWords.put(product, weights.keySet().toArray(new String[0]));
+    }
+
+    /**
+     * Removes a product from the index.
+     *
+     * @param product the product to remove
+     */
+    void remove(Product product) {
+        String[] words = indexedWords.remove(product);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            ConcurrentHashMap<Product, Integer> products = postings.get(word);
+            if (products != null) {
+                products.remove(product);
+                if (products.isEmpty()) {
+                    postings.remove(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the products matching every word of a query, most relevant first.
+     *
+     * @param query the words to search for
+     * @param limit the most products to return
+     * @return the matching products
+     */
+    List<Product> search(String query, int limit) {
+        HashMap<Product, Integer> scores = null;
+        for (String word : tokenise(query)) {
+            HashMap<Product, Integer> matches = match(word, scores);
+            if (scores == null) {
+                scores = matches;
+            } else {
+                // matches only holds products which also matched every earlier word
+                HashMap<Product, Integer> earlier = scores;
+                matches.replaceAll((product, score) -> score + earlier.get(product));
+                scores = matches;
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        if (scores == null) {
+            return new ArrayList<>();
+        }
+        Map<Product, Integer> ranked = scores;
+        List<Product> found = new ArrayList<>(ranked.keySet());
+        found.sort((a, b) -> {
+            int byScore = Integer.compare(ranked.get(b), ranked.get(a));
+            return byScore != 0 ? byScore : a.getProductName().compareToIgnoreCase(b.getProductName());
+        });
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits.
+     *
+     * @param text the text to split
+     * @return the distinct words, in the order they first appear
+     */
+    static LinkedHashSet<String> tokenise(String text) {
+        LinkedHashSet<String> words = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // best score of each product containing a word starting with the prefix, among the candidates if given
+    private HashMap<Product, Integer> match(String prefix, HashMap<Product, Integer> candidates) {
+        HashMap<Product, Integer> matches = new HashMap<>();
+        for (Map.Entry<String, ConcurrentHashMap<Product, Integer>> entry : postings.tailMap(prefix, true).entrySet()) {
+            String word = entry.getKey();
+            if (!word.startsWith(prefix)) {
+                break;
+            }
+            int factor = word.length() == prefix.length() ? 2 : 1;
+            for (Map.Entry<Product, Integer> posting : entry.getValue().entrySet()) {
+                if (candidates == null || candidates.containsKey(posting.getKey())) {
+                    matches.merge(posting.getKey(), posting.getValue() * factor, Math::max);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static void addWords(HashMap<String, Integer> weights, String text, int weight) {
+        for (String word : tokenise(text)) {
+            weights.merge(word, weight, Integer::sum);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package entities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Orders in which the products of an Inventory can be listed.
+ * Each order compares fields already held by Product, so sorting never re-parses records.
+ * An order by stock on hand follows stock which orders change without changing the inventory, so no listing
+ * stays in it; such an order is sorted on one reading of each product's stock whenever it is read.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public enum ProductSortOrder {
+    QUANTITY_DESCENDING((p1, p2) -> Integer.compare(p2.getQuantity(), p1.getQuantity()), true),
+    PRICE_ASCENDING((p1, p2) -> Double.compare(p1.getPrice(), p2.getPrice()), false),
+    PRICE_DESCENDING((p1, p2) -> Double.compare(p2.getPrice(), p1.getPrice()), false),
+    NAME((p1, p2) -> p1.getProductName().compareToIgnoreCase(p2.getProductName()), false);
+
+    private final Comparator<Product> comparator;
+    private final boolean followsStock;
+
+    ProductSortOrder(Comparator<Product> comparator, boolean followsStock) {
+        this.comparator = comparator;
+        this.followsStock = followsStock;
+    }
+
+    /**
+     * Returns the comparator implementing this order.
+     *
+     * @return the comparator for this order
+     */
+    public Comparator<Product> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns whether this order is by stock on hand, which changes as orders are placed.
+     *
+     * @return true if a sorted listing can fall out of this order without the inventory changing
+     */
+    public boolean followsStock() {
+        return followsStock;
+    }
+
+    /**
+     * Sorts products into this order. Ties keep the order they are given in. An order by stock is sorted on
+     * one reading of each product's stock, so a sale made while sorting cannot make comparisons disagree.
+     *
+     * @param products the products to sort
+     * @return a new list of the products in this order
+     */
+    public List<Product> sort(Collection<Product> products) {
+        ArrayList<Product> sorted = new ArrayList<>(products);
+        if (!followsStock) {
+            sorted.sort(comparator);
+            return sorted;
+        }
+        // pack the complement of each reading above its position, so sorting ascending puts the most stock
+        // first and keeps ties in place
+        long[] readings = new long[sorted.size()];
+        for (int i = 0; i < readings.length; i++) {
+            readings[i] = ((long) ~sorted.get(i).getQuantity() << 32) | i;
+        }
+        Arrays.sort(readings);
+        ArrayList<Product> ordered = new ArrayList<>(readings.length);
+        for (long reading : readings) {
+            ordered.add(sorted.get((int) reading));
+        }
+        return ordered;
+    }
+}
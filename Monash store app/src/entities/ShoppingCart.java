@@ -1,56 +1,319 @@
 package entities;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 /**
- * Class which stores information of shopping cart for the users in Monash Merchant Application
+ * Class which stores information of shopping cart for the users in Monash Merchant Application.
+ * The cart holds one line per product, keyed by the product's id, so adding a product which is already
+ * in the cart adds to the quantity of its line, even if the product has been edited since. Lines are
+ * pointed at the current version of their product when the order is placed. The stock of each line is held for the cart for a limited
+ * time, after which it returns to stock. The number of items and the total price of the cart are kept
+ * up to date as lines are added, changed and removed.
  *
  * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
  * @version 5/16/2024
  */
 public class ShoppingCart {
-    private List<CartItem> items;
+    public static final int MAX_LINES = 20;
+    private LinkedHashMap<Long, CartItem> items;
+    private HoldScheduler holdScheduler;
+    private int itemCount;
+    private long totalCents;
 
     /**
      * Default constructor.
      */
     public ShoppingCart() {
-        this.items = new ArrayList<>();
+        this.items = new LinkedHashMap<>();
+        this.holdScheduler = HoldScheduler.getDefault();
     }
 
     /**
-     * Parameterized constructor.
+     * Parameterized constructor. Items of the same product are merged into one line, whose hold is resized
+     * to the merged quantity; the hold of the merged item is released.
      *
      * @param items the list of cart items
      */
     public ShoppingCart(List<CartItem> items) {
-        this.items = items;
+        this.items = new LinkedHashMap<>();
+        this.holdScheduler = HoldScheduler.getDefault();
+        for (CartItem item : items) {
+            CartItem line = this.items.get(item.getProduct().getId());
+            itemCount += item.getQuantity();
+            if (line == null) {
+                this.items.put(item.getProduct().getId(), item);
+                totalCents += item.getTotalCents();
+            } else {
+                // the merged units are charged at the line's price
+                totalCents -= line.getTotalCents();
+                merge(line, item);
+                totalCents += line.getTotalCents();
+            }
+        }
     }
 
     /**
-     * Adds a new item to the shopping cart with the specified product and quantity.
+     * Parameterized constructor.
+     *
+     * @param holdScheduler the scheduler which holds stock for the cart
+     */
+    public ShoppingCart(HoldScheduler holdScheduler) {
+        this.items = new LinkedHashMap<>();
+        this.holdScheduler = holdScheduler;
+    }
+
+    /**
+     * Adds a quantity of a product to the shopping cart, holding its stock. If the product is already in
+     * the cart, the quantity is added to its line and the line's hold is renewed.
      *
      * @param product  the product to be added
      * @param quantity the quantity of the product
+     * @return true if the item was added, false if not enough stock is available
+     */
+    public boolean addItem(Product product, int quantity) {
+        CartItem item = items.get(product.getId());
+        if (item != null) {
+            item.refreshProduct(product);
+            return setQuantity(product, item.getQuantity() + quantity);
+        }
+        StockHold hold = holdScheduler.hold(product, quantity);
+        if (hold == null) {
+            return false;
+        }
+        item = new CartItem(product, quantity, hold);
+        items.put(product.getId(), item);
+        itemCount += quantity;
+        totalCents += item.getTotalCents();
+        return true;
+    }
+
+    /**
+     * Changes the quantity of a product in the shopping cart, holding more stock or returning the
+     * difference to stock. A quantity of zero or less removes the product.
+     *
+     * @param product  the product in the cart
+     * @param quantity the new quantity
+     * @return true if the quantity was changed, false if the product is not in the cart or not enough
+     * stock is available
+     */
+    public boolean setQuantity(Product product, int quantity) {
+        CartItem item = items.get(product.getId());
+        if (item == null) {
+            return false;
+        }
+        if (quantity <= 0) {
+            return removeItem(product);
+        }
+        StockHold hold = holdScheduler.resize(item.getHold(), product, quantity);
+        if (hold == null) {
+            return false;
+        }
+        itemCount += quantity - item.getQuantity();
+        totalCents -= item.getTotalCents();
+        item.setHold(hold);
+        item.setQuantity(quantity);
+        totalCents += item.getTotalCents();
+        return true;
+    }
+
+    /**
+     * Removes a product from the shopping cart, returning its held stock.
+     *
+     * @param product the product to remove
+     * @return true if the product was in the cart
      */
-    public void addItem(Product product, int quantity) {
-        items.add(new CartItem(product, quantity));
+    public boolean removeItem(Product product) {
+        CartItem item = items.remove(product.getId());
+        if (item == null) {
+            return false;
+        }
+        if (item.getHold() != null) {
+            item.getHold().release();
+        }
+        itemCount -= item.getQuantity();
+        totalCents -= item.getTotalCents();
+        return true;
     }
 
     /**
-     * Retrieves the list of cart items in the shopping cart.
+     * Retrieves the cart item of a product.
      *
-     * @return the list of cart items
+     * @param product the product
+     * @return the CartItem, or null if the product is not in the cart
+     */
+    public CartItem getItem(Product product) {
+        return items.get(product.getId());
+    }
+
+    /**
+     * Retrieves the cart items in the shopping cart, in the order their products were first added.
+     *
+     * @return a new list of the cart items
      */
     public List<CartItem> getItems() {
-        return items;
+        return new ArrayList<>(items.values());
     }
 
     /**
-     * Clears all items from the shopping cart.
+     * Checks whether the shopping cart has any items.
+     *
+     * @return true if the cart is empty
+     */
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * Retrieves the number of lines in the shopping cart, one per product.
+     *
+     * @return the number of lines
+     */
+    public int getLineCount() {
+        return items.size();
+    }
+
+    /**
+     * Retrieves the number of items in the shopping cart, counting each unit of each product.
+     *
+     * @return the number of items
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Checks whether a product can be added to the shopping cart without going over the line limit.
+     * A product already in the cart can always be added to.
+     *
+     * @param product the product to add
+     * @return true if the product can be added
+     */
+    public boolean canAdd(Product product) {
+        return items.size() < MAX_LINES || items.containsKey(product.getId());
+    }
+
+    /**
+     * Retrieves the total price of the items in the shopping cart.
+     *
+     * @return the total price in cents
+     */
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    /**
+     * Pins the hold of every item so none can expire during checkout. Items whose hold has expired are
+     * held again if the stock is still available, and removed from the cart if it is not.
+     *
+     * @return true if every item is held, false if an item was removed
+     */
+    public boolean pinHolds() {
+        boolean allHeld = true;
+        Iterator<CartItem> iterator = items.values().iterator();
+        while (iterator.hasNext()) {
+            CartItem item = iterator.next();
+            if (item.getHold() != null && item.getHold().pin()) {
+                continue;
+            }
+            StockHold hold = holdScheduler.hold(item.getProduct(), item.getQuantity());
+            if (hold != null && hold.pin()) {
+                item.setHold(hold);
+            } else {
+                if (hold != null) {
+                    hold.release();
+                }
+                iterator.remove();
+                itemCount -= item.getQuantity();
+                totalCents -= item.getTotalCents();
+                allHeld = false;
+            }
+        }
+        if (!allHeld) {
+            unpinHolds();
+        }
+        return allHeld;
+    }
+
+    /**
+     * Points every item at the current version of its product in an inventory, as an edit replaces a product
+     * with an edited copy. Items whose product is no longer in the inventory are removed, returning their
+     * stock.
+     *
+     * @param inventory the inventory the products are in
+     * @return true if every item's product is in the inventory, false if an item was removed
+     */
+    public boolean refreshProducts(Inventory inventory) {
+        boolean allListed = true;
+        Iterator<CartItem> iterator = items.values().iterator();
+        while (iterator.hasNext()) {
+            CartItem item = iterator.next();
+            Product product = inventory.findProductById(item.getProduct().getId());
+            if (product != null) {
+                item.refreshProduct(product);
+                continue;
+            }
+            if (item.getHold() != null) {
+                item.getHold().release();
+            }
+            iterator.remove();
+            itemCount -= item.getQuantity();
+            totalCents -= item.getTotalCents();
+            allListed = false;
+        }
+        return allListed;
+    }
+
+    /**
+     * Lets the holds pinned by {@link #pinHolds()} expire again.
+     */
+    public void unpinHolds() {
+        for (CartItem item : items.values()) {
+            if (item.getHold() != null) {
+                item.getHold().unpin();
+            }
+        }
+    }
+
+    /**
+     * Commits the pinned hold of every item, taking the stock off the stock on hand.
+     */
+    public void commitHolds() {
+        for (CartItem item : items.values()) {
+            item.getHold().commit();
+        }
+    }
+
+    /**
+     * Clears all items from the shopping cart, releasing any stock still held for them.
      */
     public void clear() {
+        for (CartItem item : items.values()) {
+            if (item.getHold() != null) {
+                item.getHold().release();
+            }
+        }
         items.clear();
+        itemCount = 0;
+        totalCents = 0;
+    }
+
+    // adds an item to the line of the same product, holding the merged quantity under the line's hold; if the
+    // stock is no longer available, the line is left unheld and held again when the order is placed
+    private void merge(CartItem line, CartItem item) {
+        if (item.getHold() != null) {
+            item.getHold().release();
+        }
+        int quantity = line.getQuantity() + item.getQuantity();
+        if (line.getHold() != null) {
+            StockHold hold = holdScheduler.resize(line.getHold(), line.getProduct(), quantity);
+            if (hold == null) {
+                line.getHold().release();
+            }
+            line.setHold(hold);
+        }
+        line.setQuantity(quantity);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,153 @@
+package entities;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stock reserved for a cart item until a deadline.
+ * A hold is held until it is committed by an order, released by its cart, expired by the
+ * HoldScheduler or transferred to a replacement hold, and each of those happens at most once. Checkout pins a
+ * hold so it cannot expire while the order is being placed. A hold waits in a bucket of its scheduler until
+ * its deadline, and leaves it as soon as it ends.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class StockHold {
+    private static final int HELD = 0;
+    private static final int PINNED = 1;
+    private static final int COMMITTED = 2;
+    private static final int RELEASED = 3;
+    private static final int EXPIRED = 4;
+    private static final int TRANSFERRED = 5;
+
+    private final StockLevel stock;
+    private final int quantity;
+    private final long deadline;
+    private final Set<StockHold> bucket;
+    private final AtomicInteger state;
+
+    /**
+     * Parameterized constructor. The stock must already have been reserved.
+     *
+     * @param stock    the stock level the quantity is reserved from
+     * @param quantity the reserved quantity
+     * @param deadline the System.nanoTime() at which the hold expires
+     * @param bucket   the scheduler's bucket the hold waits in until its deadline
+     * @param pinned   true if the hold starts out pinned
+     */
+    StockHold(StockLevel stock, int quantity, long deadline, Set<StockHold> bucket, boolean pinned) {
+        this.stock = stock;
+        this.quantity = quantity;
+        this.deadline = deadline;
+        this.bucket = bucket;
+        this.state = new AtomicInteger(pinned ? PINNED : HELD);
+    }
+
+    /**
+     * Returns the reserved quantity.
+     *
+     * @return the quantity of the hold
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Checks whether the hold still reserves its stock.
+     *
+     * @return true if the hold has not been committed, released or expired
+     */
+    public boolean isHeld() {
+        int current = state.get();
+        return current == HELD || current == PINNED;
+    }
+
+    /**
+     * Stops the hold from expiring until it is committed, released or unpinned.
+     *
+     * @return true if the hold was pinned, false if it has already expired or been released
+     */
+    public boolean pin() {
+        return state.compareAndSet(HELD, PINNED);
+    }
+
+    /**
+     * Lets a pinned hold expire again, expiring it at once if its deadline has passed.
+     */
+    public void unpin() {
+        if (state.compareAndSet(PINNED, HELD) && deadline - System.nanoTime() <= 0) {
+            expire();
+        }
+    }
+
+    /**
+     * Commits a pinned hold, taking its stock off the stock on hand.
+     *
+     * @return true if the hold was committed
+     */
+    public boolean commit() {
+        if (end(PINNED, COMMITTED)) {
+            stock.commit(quantity);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Releases the hold, returning its stock to available stock.
+     */
+    public void release() {
+        if (end(HELD, RELEASED) || end(PINNED, RELEASED)) {
+            stock.release(quantity);
+        }
+    }
+
+    /**
+     * Ends the hold without returning its stock, which a replacement hold takes over.
+     *
+     * @return true if the hold was transferred, false if it was no longer held or is pinned
+     */
+    boolean transfer() {
+        return end(HELD, TRANSFERRED);
+    }
+
+    /**
+     * Ends a pinned hold without returning its stock, which a replacement hold takes over pinned.
+     *
+     * @return true if the hold was transferred, false if it was not pinned
+     */
+    boolean transferPinned() {
+        return end(PINNED, TRANSFERRED);
+    }
+
+    /**
+     * Expires the hold if it is not pinned, returning its stock to available stock.
+     *
+     * @return true if the hold expired
+     */
+    boolean expire() {
+        if (end(HELD, EXPIRED)) {
+            stock.release(quantity);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the deadline of the hold.
+     *
+     * @return the System.nanoTime() at which the hold expires
+     */
+    long getDeadline() {
+        return deadline;
+    }
+
+    private boolean end(int from, int to) {
+        if (state.compareAndSet(from, to)) {
+            bucket.remove(this);
+            return true;
+        }
+        return false;
+    }
+}
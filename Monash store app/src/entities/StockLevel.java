@@ -0,0 +1,162 @@
+package entities;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stock level of a product, safe to use from many shoppers at once without locking.
+ * Stock on hand is what the store holds and persists. Available stock is what is on hand and not reserved
+ * in a cart. Adding to a cart reserves available stock with a compare-and-set, so two shoppers can never
+ * reserve the same unit; placing the order commits the reservation, taking it off the stock on hand.
+ * Both are kept in one atomic long, stock on hand in the high half and available stock in the low half, so
+ * every change sees and changes them together and the stock reserved, the difference between them, is
+ * never negative.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class StockLevel {
+    private final AtomicLong levels;
+    private volatile StockListener[] listeners = new StockListener[0];
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param quantity the stock on hand, none of which is reserved
+     */
+    public StockLevel(int quantity) {
+        this.levels = new AtomicLong(pack(quantity, quantity));
+    }
+
+    /**
+     * Returns the stock on hand, including reserved stock.
+     *
+     * @return the stock on hand
+     */
+    public int getOnHand() {
+        return onHandOf(levels.get());
+    }
+
+    /**
+     * Returns the stock which is not reserved.
+     *
+     * @return the available stock
+     */
+    public int getAvailable() {
+        return availableOf(levels.get());
+    }
+
+    /**
+     * Sets the stock on hand. Reservations are kept, so available stock changes by the same amount; stock on
+     * hand is never set below the stock reserved, which carts may still commit.
+     *
+     * @param quantity the new stock on hand
+     * @return the stock on hand set, which is the reserved stock if that is more than the quantity
+     */
+    public int setOnHand(int quantity) {
+        while (true) {
+            long current = levels.get();
+            int reserved = onHandOf(current) - availableOf(current);
+            int onHand = Math.max(quantity, reserved);
+            if (levels.compareAndSet(current, pack(onHand, onHand - reserved))) {
+                notifyListeners();
+                return onHand;
+            }
+        }
+    }
+
+    /**
+     * Reserves stock if enough is available.
+     *
+     * @param quantity the quantity to reserve
+     * @return true if the stock was reserved, false if not enough is available
+     */
+    public boolean tryReserve(int quantity) {
+        while (true) {
+            long current = levels.get();
+            int available = availableOf(current);
+            if (available < quantity) {
+                return false;
+            }
+            if (levels.compareAndSet(current, pack(onHandOf(current), available - quantity))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns reserved stock to available stock.
+     *
+     * @param quantity the reserved quantity to release
+     */
+    public void release(int quantity) {
+        // available stock is never negative, so adding to the low half never carries into the high half
+        levels.addAndGet(quantity);
+    }
+
+    /**
+     * Takes reserved stock off the stock on hand once it has been sold.
+     *
+     * @param quantity the reserved quantity to commit
+     */
+    public void commit(int quantity) {
+        levels.addAndGet(-((long) quantity << 32));
+        notifyListeners();
+    }
+
+    /**
+     * Puts sold stock back on hand and makes it available again, as when an order is not placed after all.
+     *
+     * @param quantity the committed quantity to return
+     */
+    public void restock(int quantity) {
+        levels.addAndGet(((long) quantity << 32) + quantity);
+        notifyListeners();
+    }
+
+    /**
+     * Registers a listener to be told when the stock on hand changes.
+     *
+     * @param listener the listener to add
+     */
+    synchronized void addListener(StockListener listener) {
+        StockListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        listeners = added;
+    }
+
+    /**
+     * Stops telling a listener when the stock on hand changes.
+     *
+     * @param listener the listener to remove
+     */
+    synchronized void removeListener(StockListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                StockListener[] removed = new StockListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, removed, 0, i);
+                System.arraycopy(listeners, i + 1, removed, i, removed.length - i);
+                listeners = removed;
+                return;
+            }
+        }
+    }
+
+    private static long pack(int onHand, int available) {
+        return ((long) onHand << 32) | (available & 0xFFFFFFFFL);
+    }
+
+    private static int onHandOf(long levels) {
+        return (int) (levels >> 32);
+    }
+
+    private static int availableOf(long levels) {
+        return (int) levels;
+    }
+
+    private void notifyListeners() {
+        for (StockListener listener : listeners) {
+            listener.onHandChanged(this);
+        }
+    }
+}
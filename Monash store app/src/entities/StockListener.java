@@ -0,0 +1,18 @@
+package entities;
+
+/**
+ * Listener told whenever the stock on hand of a StockLevel changes.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+interface StockListener {
+
+    /**
+     * Called after the stock on hand has changed. The listener should read the current stock on hand
+     * rather than assume an order between calls made by different threads.
+     *
+     * @param stock the stock level which changed
+     */
+    void onHandChanged(StockLevel stock);
+}
@@ -0,0 +1,231 @@
+package util;
+
+import entities.Inventory;
+import entities.Product;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Utility class. Prints the product catalog as a table, one page at a time.
+ * Each page is formatted into a reused buffer and printed with a single write. The columns of the
+ * inventory's pages which only change when a product is edited are cached until the inventory's listing
+ * is replaced by a new version, so paging back and forth only formats the row numbers and quantities.
+ * Each page is printed from one version of the listing, which the cursor keeps so that a product number
+ * read from the page refers to the product shown. How long each page takes to print is recorded as the
+ * latency of browsing.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class CatalogRenderer {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    private static final String HEADER = String.format("%-4s\t%-20s\t%-15s\t%-15s\t%-15s\t%-5s\t%-5s\t%s\t%s%n",
+            "No.", "Name", "Brand", "Category", "SubCategory", "Price", "Member Price", "Quantity", "Description");
+    private final PrintStream out;
+    private final int pageSize;
+    private final StringBuilder buffer = new StringBuilder();
+    private final StringBuilder row = new StringBuilder();
+    private List<Product> cachedListing;
+    // for each cached page, the columns before and after the quantity of each row
+    private final HashMap<Integer, String[][]> cachedPages = new HashMap<>();
+    private final LatencyRecorder pageLatency = MetricsRegistry.getDefault().latency("browse");
+
+    /**
+     * Position in a list of products, moved a page at a time.
+     */
+    public class Cursor {
+        private final Inventory inventory;
+        private final List<Product> products;
+        private final int firstNumber;
+        private final boolean available;
+        private int page;
+        private List<Product> printed;
+
+        private Cursor(Inventory inventory, List<Product> products, int firstNumber, boolean available) {
+            this.inventory = inventory;
+            this.products = products;
+            this.firstNumber = firstNumber;
+            this.available = available;
+        }
+
+        /**
+         * Prints the current page.
+         */
+        public void print() {
+            printPage(this);
+        }
+
+        /**
+         * Moves to the next page, if there is one.
+         *
+         * @return true if the cursor moved
+         */
+        public boolean next() {
+            if (page + 1 >= getPageCount()) {
+                return false;
+            }
+            page++;
+            return true;
+        }
+
+        /**
+         * Moves to the previous page, if there is one.
+         *
+         * @return true if the cursor moved
+         */
+        public boolean previous() {
+            if (page == 0) {
+                return false;
+            }
+            page--;
+            return true;
+        }
+
+        /**
+         * Returns the current page.
+         *
+         * @return the zero-based page number
+         */
+        public int getPage() {
+            return page;
+        }
+
+        /**
+         * Returns the number of pages, which is at least one.
+         *
+         * @return the number of pages
+         */
+        public int getPageCount() {
+            return pageCount(products());
+        }
+
+        /**
+         * Returns the products the last page was printed from, in the order they were numbered.
+         *
+         * @return the listing printed, or the current listing if no page has been printed
+         */
+        public List<Product> getPrinted() {
+            return printed != null ? printed : products();
+        }
+
+        // read from the inventory each time, as its list is replaced when all its products are set
+        private List<Product> products() {
+            return inventory != null ? inventory.getProducts() : products;
+        }
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param out      the stream to print to
+     * @param pageSize the number of products on each page
+     */
+    public CatalogRenderer(PrintStream out, int pageSize) {
+        this.out = out;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Creates a cursor over the products of an inventory in listing order. Its pages are cached.
+     *
+     * @param inventory   the inventory to list
+     * @param firstNumber the number shown for the first product
+     * @param available   true to show the quantity available to add to a cart, false for the stock on hand
+     * @return a cursor at the first page
+     */
+    public Cursor cursor(Inventory inventory, int firstNumber, boolean available) {
+        return new Cursor(inventory, null, firstNumber, available);
+    }
+
+    /**
+     * Creates a cursor over a list of products, such as search results. Its pages are not cached.
+     *
+     * @param products    the products to list
+     * @param firstNumber the number shown for the first product
+     * @param available   true to show the quantity available to add to a cart, false for the stock on hand
+     * @return a cursor at the first page
+     */
+    public Cursor cursor(List<Product> products, int firstNumber, boolean available) {
+        return new Cursor(null, products, firstNumber, available);
+    }
+
+    private synchronized void printPage(Cursor cursor) {
+        long begin = System.nanoTime();
+        List<Product> products = cursor.products();
+        int pageCount = pageCount(products);
+        cursor.page = Math.min(cursor.page, pageCount - 1);
+        cursor.printed = products;
+        int start = cursor.page * pageSize;
+        int end = Math.min(start + pageSize, products.size());
+        String[][] columns = cursor.inventory == null ? renderColumns(products, start, end)
+                : cachedColumns(products, cursor.page, start, end);
+        buffer.setLength(0);
+        buffer.append(HEADER);
+        for (int i = start; i < end; i++) {
+            Product product = products.get(i);
+            appendPadded(buffer.length(), buffer.append(cursor.firstNumber + i), 4).append('\t');
+            buffer.append(columns[0][i - start]);
+            int quantity = cursor.available ? product.getAvailableQuantity() : product.getQuantity();
+            appendPadded(buffer.length(), buffer.append(quantity), 15).append('\t');
+            buffer.append(columns[1][i - start]);
+        }
+        if (pageCount > 1) {
+            buffer.append("Page ").append(cursor.page + 1).append(" of ").append(pageCount)
+                    .append(" - n. Next page, p. Previous page").append(System.lineSeparator());
+        }
+        out.print(buffer);
+        out.flush();
+        pageLatency.record(System.nanoTime() - begin);
+    }
+
+    // an inventory's listing is never changed, only replaced, so the cache is kept while it is the same list
+    private String[][] cachedColumns(List<Product> listing, int page, int start, int end) {
+        if (listing != cachedListing) {
+            cachedPages.clear();
+            cachedListing = listing;
+        }
+        String[][] columns = cachedPages.get(page);
+        if (columns == null) {
+            columns = renderColumns(listing, start, end);
+            cachedPages.put(page, columns);
+        }
+        return columns;
+    }
+
+    // the columns before and after the quantity, which only change when a product is edited
+    private String[][] renderColumns(List<Product> products, int start, int end) {
+        String[][] columns = new String[2][end - start];
+        for (int i = start; i < end; i++) {
+            Product product = products.get(i);
+            row.setLength(0);
+            appendPadded(row, product.getProductName(), 20).append('\t');
+            appendPadded(row, product.getBrand(), 15).append('\t');
+            appendPadded(row, product.getCategory(), 15).append('\t');
+            appendPadded(row, product.getSubCategory(), 15).append('\t');
+            Money.appendCents(row, product.getPriceCents()).append('\t');
+            int from = row.length();
+            appendPadded(from, Money.appendCents(row, product.getMemberPriceCents()), 15).append('\t');
+            columns[0][i - start] = row.toString();
+            columns[1][i - start] = product.getDescription() + System.lineSeparator();
+        }
+        return columns;
+    }
+
+    private static StringBuilder appendPadded(StringBuilder builder, String value, int width) {
+        return appendPadded(builder.length(), builder.append(value), width);
+    }
+
+    private int pageCount(List<Product> products) {
+        return Math.max(1, (products.size() + pageSize - 1) / pageSize);
+    }
+
+    // pads what was appended since from with spaces, up to width characters
+    private static StringBuilder appendPadded(int from, StringBuilder builder, int width) {
+        for (int length = builder.length() - from; length < width; length++) {
+            builder.append(' ');
+        }
+        return builder;
+    }
+}
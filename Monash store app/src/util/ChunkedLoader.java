@@ -0,0 +1,273 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Utility class. Loads a large file in parallel.
+ * The file is split into chunks which start and end at line boundaries, each chunk is memory-mapped and
+ * parsed by a fork/join task, and the results are merged back in file order. A file of one chunk is parsed
+ * on the calling thread.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class ChunkedLoader {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int PROBE_SIZE = 4096;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Parses one chunk of a file.
+     *
+     * @param <T> the result of parsing a chunk
+     */
+    public interface ChunkParser<T> {
+
+        /**
+         * Parses one chunk.
+         *
+         * @param chunk  the bytes of the chunk, which start at the start of a line and end at the end of one
+         * @param offset the file offset of the first byte of the chunk
+         * @return the result of parsing the chunk
+         */
+        T parse(ByteBuffer chunk, long offset);
+    }
+
+    /**
+     * Records parsed from one chunk, with the lines they came from and the malformed lines skipped.
+     */
+    private static class Records<T> {
+        private final ArrayList<T> items = new ArrayList<>();
+        private final ArrayList<Integer> itemLines = new ArrayList<>();
+        private final ArrayList<String> reasons = new ArrayList<>();
+        private final ArrayList<Integer> reasonLines = new ArrayList<>();
+        private int lines;
+    }
+
+    /**
+     * Default constructor. Chunks are parsed on the common fork/join pool.
+     */
+    public ChunkedLoader() {
+        this(DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param chunkSize the approximate size of each chunk in bytes
+     * @param pool      the pool to parse chunks on
+     */
+    public ChunkedLoader(int chunkSize, ForkJoinPool pool) {
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Parses every chunk of a file.
+     *
+     * @param fileName the name of the file
+     * @param parser   parses one chunk
+     * @param <T>      the result of parsing a chunk
+     * @return the result of each chunk, in file order
+     */
+    public <T> List<T> mapChunks(String fileName, ChunkParser<T> parser) {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long[] bounds = split(channel);
+            if (bounds.length <= 2) {
+                List<T> results = new ArrayList<>();
+                if (bounds.length == 2) {
+                    results.add(parseChunk(channel, bounds[0], bounds[1], parser, fileName));
+                }
+                return results;
+            }
+            return pool.invoke(new ChunkTask<>(channel, bounds, 0, bounds.length - 1, parser, fileName));
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads every record of a comma-separated file. Malformed lines are reported on the standard error
+     * stream with their line number in the file, and skipped.
+     *
+     * @param fileName the name of the file
+     * @param parser   parses the current record of a reader, returning null to skip it
+     * @param <T>      the type of the records
+     * @return the records in file order
+     */
+    public <T> ArrayList<T> readRecords(String fileName, Function<RecordReader, T> parser) {
+        return readRecords(fileName, parser, System.err::println);
+    }
+
+    /**
+     * Reads every record of a comma-separated file, skipping malformed lines.
+     *
+     * @param fileName the name of the file
+     * @param parser   parses the current record of a reader, returning null to skip it
+     * @param reporter receives a message for each malformed line, starting with the file name and line
+     *                 number, in file order
+     * @param <T>      the type of the records
+     * @return the records in file order
+     */
+    public <T> ArrayList<T> readRecords(String fileName, Function<RecordReader, T> parser,
+                                        Consumer<String> reporter) {
+        return readRecords(fileName, parser, reporter, null);
+    }
+
+    /**
+     * Reads every record of a comma-separated file, skipping malformed lines, and gives the line number of
+     * each record read.
+     *
+     * @param fileName    the name of the file
+     * @param parser      parses the current record of a reader, returning null to skip it
+     * @param reporter    receives a message for each malformed line, starting with the file name and line
+     *                    number, in file order
+     * @param lineNumbers receives the line number of each record returned, in the same order, or null if
+     *                    line numbers are not needed
+     * @param <T>         the type of the records
+     * @return the records in file order
+     */
+    public <T> ArrayList<T> readRecords(String fileName, Function<RecordReader, T> parser,
+                                        Consumer<String> reporter, List<Long> lineNumbers) {
+        List<Records<T>> chunks = mapChunks(fileName, (chunk, offset) -> {
+            Records<T> records = new Records<>();
+            RecordReader reader = new RecordReader(fileName, chunk, (reason, line) -> {
+                records.reasons.add(reason);
+                records.reasonLines.add(line);
+            });
+            try {
+                while (reader.next()) {
+                    T item = parser.apply(reader);
+                    if (item != null) {
+                        records.items.add(item);
+                        if (lineNumbers != null) {
+                            records.itemLines.add(reader.getLineNumber());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading " + fileName + ": " + e.getMessage());
+            }
+            records.lines = reader.getLineNumber();
+            return records;
+        });
+        int size = 0;
+        for (Records<T> records : chunks) {
+            size += records.items.size();
+        }
+        ArrayList<T> merged = new ArrayList<>(size);
+        long firstLine = 0;
+        for (Records<T> records : chunks) {
+            merged.addAll(records.items);
+            if (lineNumbers != null) {
+                for (int line : records.itemLines) {
+                    lineNumbers.add(firstLine + line);
+                }
+            }
+            for (int i = 0; i < records.reasons.size(); i++) {
+                reporter.accept(RecordReader.describe(fileName, firstLine + records.reasonLines.get(i),
+                        records.reasons.get(i)));
+            }
+            firstLine += records.lines;
+        }
+        return merged;
+    }
+
+    /**
+     * Parses a range of chunks, splitting it in half until one chunk is left.
+     */
+    private static class ChunkTask<T> extends RecursiveTask<List<T>> {
+        private static final long serialVersionUID = 1L;
+        // tasks are never serialized; the channel and parser are only used while the file is loaded
+        private final transient FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+        private final transient ChunkParser<T> parser;
+        private final String fileName;
+
+        private ChunkTask(FileChannel channel, long[] bounds, int from, int to, ChunkParser<T> parser,
+                          String fileName) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.parser = parser;
+            this.fileName = fileName;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (to - from == 1) {
+                List<T> results = new ArrayList<>();
+                results.add(parseChunk(channel, bounds[from], bounds[to], parser, fileName));
+                return results;
+            }
+            int middle = (from + to) >>> 1;
+            ChunkTask<T> first = new ChunkTask<>(channel, bounds, from, middle, parser, fileName);
+            first.fork();
+            List<T> second = new ChunkTask<>(channel, bounds, middle, to, parser, fileName).compute();
+            List<T> results = first.join();
+            results.addAll(second);
+            return results;
+        }
+    }
+
+    private static <T> T parseChunk(FileChannel channel, long start, long end, ChunkParser<T> parser,
+                                    String fileName) {
+        try {
+            return parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), start);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    // offsets where chunks start, ending with the file size; each chunk after the first starts after a newline
+    private long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ArrayList<Long> bounds = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long start = 0;
+        while (start < size) {
+            bounds.add(start);
+            long next = start + chunkSize;
+            if (next >= size) {
+                break;
+            }
+            // move forward to just after the next newline
+            long lineStart = -1;
+            while (lineStart < 0 && next < size) {
+                probe.clear();
+                int read = channel.read(probe, next);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        lineStart = next + i + 1;
+                        break;
+                    }
+                }
+                next += read;
+            }
+            start = lineStart < 0 ? size : lineStart;
+        }
+        long[] offsets = new long[bounds.size() + 1];
+        for (int i = 0; i < bounds.size(); i++) {
+            offsets[i] = bounds.get(i);
+        }
+        offsets[bounds.size()] = size;
+        return offsets;
+    }
+}
@@ -0,0 +1,94 @@
+package util;
+
+import entities.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory index of user credentials keyed by email.
+ * The users file is loaded once and only reloaded when its modification time or size changes, so a
+ * login is a map lookup. The index is replaced as a whole on reload, so lookups never need a lock.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class CredentialIndex {
+    private final Path path;
+    private volatile Map<String, User> usersByEmail = new HashMap<>();
+    private volatile long loadedModifiedTime = -1;
+    private volatile long loadedSize = -1;
+
+    /**
+     * Constructor which loads the users file.
+     *
+     * @param fileName the name of the users file
+     */
+    public CredentialIndex(String fileName) {
+        this.path = Paths.get(fileName);
+        refreshIfChanged();
+    }
+
+    /**
+     * Looks up a user by email, reloading the users file first if it has changed.
+     *
+     * @param email the email of the user
+     * @return the User, or null if there is no user with that email
+     */
+    public User findUser(String email) {
+        refreshIfChanged();
+        return usersByEmail.get(email);
+    }
+
+    /**
+     * Returns the number of users in the index.
+     *
+     * @return the number of users
+     */
+    public int size() {
+        return usersByEmail.size();
+    }
+
+    /**
+     * Reloads the users file if its modification time or size differs from when it was last loaded. Final,
+     * as the constructor uses it to load the file.
+     */
+    public final void refreshIfChanged() {
+        long modifiedTime;
+        long size;
+        try {
+            modifiedTime = Files.getLastModifiedTime(path).toMillis();
+            size = Files.size(path);
+        } catch (IOException e) {
+            // no users file yet
+            return;
+        }
+        if (modifiedTime == loadedModifiedTime && size == loadedSize) {
+            return;
+        }
+        synchronized (this) {
+            if (modifiedTime != loadedModifiedTime || size != loadedSize) {
+                HashMap<String, User> users = new HashMap<>();
+                try (RecordReader reader = new RecordReader(path.toString())) {
+                    while (reader.next()) {
+                        if (reader.getFieldCount() < 2) {
+                            reader.reportMalformed("expected an email and a password");
+                        } else {
+                            users.putIfAbsent(reader.getString(0), new User(reader.getString(0),
+                                    reader.getString(1)));
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException("Error reading users file: " + e.getMessage());
+                }
+                usersByEmail = users;
+                loadedModifiedTime = modifiedTime;
+                loadedSize = size;
+            }
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package util;
+
+import entities.Customer;
+import entities.ShoppingCart;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Customer store over the customers file, indexed by email.
+ * The index holds the file offset of each customer's record, so one customer can be read without
+ * loading the others. Funds are stored in a fixed-width field, so a customer's balance is updated by
+ * overwriting that field in place rather than rewriting the file. The index is rebuilt if the file is
+ * changed by anything other than the store. Large files are indexed in chunks in parallel. Records are
+ * read and written through one open file, which is reopened after the file is replaced or reindexed, rather
+ * than through a file opened for each call.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class CustomerStore {
+    private static final int FUNDS_FIELD = 7;
+    private static final int FUNDS_WIDTH = 12;
+    private final String fileName;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private long fileLength;
+    private long indexedModifiedTime;
+    // opened on first use and closed whenever the index is rebuilt, as the file may have been replaced
+    private RandomAccessFile file;
+
+    /**
+     * Location of a customer record within the customers file.
+     */
+    private static class Entry {
+        private final String email;
+        private final long offset;
+        private final int length;
+        private final long fundsOffset;
+        private final int fundsWidth;
+
+        private Entry(String email, long offset, int length, long fundsOffset, int fundsWidth) {
+            this.email = email;
+            this.offset = offset;
+            this.length = length;
+            this.fundsOffset = fundsOffset;
+            this.fundsWidth = fundsWidth;
+        }
+    }
+
+    /**
+     * Constructor which indexes the customers file. Records whose funds are not yet stored at the fixed
+     * width are rewritten once so that later updates can be made in place.
+     *
+     * @param fileName the name of the customers file
+     */
+    public CustomerStore(String fileName) {
+        this.fileName = fileName;
+        if (!index()) {
+            normalise();
+            index();
+        }
+    }
+
+    /**
+     * Constructor which restores an index saved by writeIndex instead of reading the customers file. The
+     * caller should check that the file has not changed since the index was saved.
+     *
+     * @param fileName the name of the customers file
+     * @param index    the saved index
+     * @throws IOException if the index cannot be read
+     */
+    public CustomerStore(String fileName, DataInputStream index) throws IOException {
+        this.fileName = fileName;
+        fileLength = index.readLong();
+        int count = index.readInt();
+        for (int i = 0; i < count; i++) {
+            Entry entry = new Entry(index.readUTF(), index.readLong(), index.readInt(), index.readLong(),
+                    index.readInt());
+            entries.put(entry.email, entry);
+        }
+        indexedModifiedTime = new File(fileName).lastModified();
+    }
+
+    /**
+     * Returns the number of customers in the store.
+     *
+     * @return the number of indexed customers
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Checks whether a customer with the given email exists.
+     *
+     * @param email the email of the customer
+     * @return true if the customer is in the store
+     */
+    public synchronized boolean contains(String email) {
+        return entries.containsKey(email);
+    }
+
+    /**
+     * Reads one customer from the customers file.
+     *
+     * @param email the email of the customer
+     * @return the Customer, or null if there is no customer with that email
+     */
+    public synchronized Customer findCustomer(String email) {
+        refreshIfChanged();
+        Entry entry = entries.get(email);
+        if (entry == null) {
+            return null;
+        }
+        byte[] record = new byte[entry.length];
+        try {
+            RandomAccessFile file = file();
+            file.seek(entry.offset);
+            file.readFully(record);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading customer file: " + e.getMessage());
+        }
+        return parseCustomer(new String(record, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Overwrites the funds of one customer in place.
+     *
+     * @param email the email of the customer
+     * @param funds the new funds of the customer
+     * @return true if the customer was found and updated
+     */
+    public synchronized boolean updateFunds(String email, double funds) {
+        // the offsets are only valid for the file as it was indexed
+        refreshIfChanged();
+        Entry entry = entries.get(email);
+        if (entry == null) {
+            return false;
+        }
+        String field = formatFunds(funds);
+        if (field.length() != entry.fundsWidth) {
+            // the funds no longer fit the field, so rewrite the file with the new value
+            normalise(email, funds);
+            index();
+            return true;
+        }
+        try {
+            RandomAccessFile file = file();
+            file.seek(entry.fundsOffset);
+            file.write(field.getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing customer file: " + e.getMessage());
+        }
+        indexedModifiedTime = new File(fileName).lastModified();
+        return true;
+    }
+
+    /**
+     * Appends a new customer to the customers file.
+     *
+     * @param customer the customer to add
+     * @throws IllegalArgumentException if a field of the customer breaks the customer rules
+     */
+    public synchronized void addCustomer(Customer customer) {
+        String error = StringValidation.validateCustomer(customer);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        byte[] record = (formatRecord(customer) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        try {
+            RandomAccessFile file = file();
+            file.seek(fileLength);
+            file.write(record);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing customer file: " + e.getMessage());
+        }
+        indexRecord(record, fileLength, record.length - System.lineSeparator().length());
+        fileLength += record.length;
+        indexedModifiedTime = new File(fileName).lastModified();
+    }
+
+    /**
+     * Forces every write made to the customers file so far to disk.
+     */
+    public synchronized void sync() {
+        if (file == null) {
+            // every write goes through the open file, and it is forced whenever it is closed
+            return;
+        }
+        try {
+            file.getChannel().force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing customer file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forces every write made to the customers file to disk and closes it. The file is opened again if the
+     * store is used afterwards.
+     */
+    public synchronized void close() {
+        closeFile();
+    }
+
+    /**
+     * Saves the index, so that it can be restored without reading the customers file.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the index cannot be written
+     */
+    public synchronized void writeIndex(DataOutputStream out) throws IOException {
+        out.writeLong(fileLength);
+        out.writeInt(entries.size());
+        for (Entry entry : entries.values()) {
+            out.writeUTF(entry.email);
+            out.writeLong(entry.offset);
+            out.writeInt(entry.length);
+            out.writeLong(entry.fundsOffset);
+            out.writeInt(entry.fundsWidth);
+        }
+    }
+
+    /**
+     * Rebuilds the index if the customers file has been changed since it was indexed.
+     */
+    public synchronized void refreshIfChanged() {
+        File file = new File(fileName);
+        if (file.lastModified() != indexedModifiedTime || file.length() != fileLength) {
+            if (!index()) {
+                normalise();
+                index();
+            }
+        }
+    }
+
+    /**
+     * Parses a line of the customers file into a Customer with an empty shopping cart.
+     *
+     * @param line A comma-separated customer record.
+     * @return the parsed Customer
+     */
+    public static Customer parseCustomer(String line) {
+        String[] details = line.split(",");
+        return new Customer(details[0], details[1], details[2], details[3], details[4], details[5], details[6],
+                Double.parseDouble(details[7]), Boolean.parseBoolean(details[8].trim()), new ShoppingCart());
+    }
+
+    // rebuilds the index, returning false if a record's funds are not at the fixed width
+    private boolean index() {
+        closeFile();
+        entries.clear();
+        indexedModifiedTime = new File(fileName).lastModified();
+        fileLength = new File(fileName).length();
+        boolean fixedWidth = true;
+        List<ArrayList<Entry>> chunks = new ChunkedLoader().mapChunks(fileName, CustomerStore::indexChunk);
+        for (ArrayList<Entry> chunk : chunks) {
+            for (Entry entry : chunk) {
+                entries.putIfAbsent(entry.email, entry);
+                fixedWidth &= entry.fundsWidth == FUNDS_WIDTH;
+            }
+        }
+        return fixedWidth;
+    }
+
+    // locates every record in one chunk of the customers file, in file order
+    private static ArrayList<Entry> indexChunk(ByteBuffer chunk, long offset) {
+        ArrayList<Entry> located = new ArrayList<>();
+        byte[] line = new byte[256];
+        int length = 0;
+        long lineStart = offset;
+        int size = chunk.remaining();
+        for (int i = 0; i <= size; i++) {
+            byte b = i < size ? chunk.get() : (byte) '\n';
+            if (b == '\n') {
+                if (length > 0 && line[length - 1] == '\r') {
+                    length--;
+                }
+                Entry entry = length == 0 ? null : locate(line, lineStart, length);
+                if (entry != null) {
+                    located.add(entry);
+                }
+                length = 0;
+                lineStart = offset + i + 1;
+            } else {
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+            }
+        }
+        return located;
+    }
+
+    private RandomAccessFile file() throws IOException {
+        if (file == null) {
+            file = new RandomAccessFile(fileName, "rw");
+        }
+        return file;
+    }
+
+    private void closeFile() {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.getChannel().force(false);
+            file.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing customer file: " + e.getMessage());
+        } finally {
+            file = null;
+        }
+    }
+
+    private boolean indexRecord(byte[] record, long offset, int length) {
+        Entry entry = locate(record, offset, length);
+        if (entry == null) {
+            return true;
+        }
+        entries.putIfAbsent(entry.email, entry);
+        return entry.fundsWidth == FUNDS_WIDTH;
+    }
+
+    // finds the email and funds field of a record, returning null if it does not have them
+    private static Entry locate(byte[] record, long offset, int length) {
+        int field = 0;
+        int emailEnd = -1;
+        int fundsStart = -1;
+        int fundsEnd = -1;
+        for (int i = 0; i < length; i++) {
+            if (record[i] == ',') {
+                field++;
+                if (field == 1) {
+                    emailEnd = i;
+                } else if (field == FUNDS_FIELD) {
+                    fundsStart = i + 1;
+                } else if (field == FUNDS_FIELD + 1) {
+                    fundsEnd = i;
+                }
+            }
+        }
+        if (emailEnd < 0 || fundsStart < 0 || fundsEnd < 0) {
+            return null;
+        }
+        String email = new String(record, 0, emailEnd, StandardCharsets.UTF_8);
+        return new Entry(email, offset, length, offset + fundsStart, fundsEnd - fundsStart);
+    }
+
+    private void normalise() {
+        normalise(null, 0);
+    }
+
+    // rewrites every record with fixed-width funds, optionally changing one customer's funds; the file is
+    // replaced whole, so a crash part way through never leaves some customers missing
+    private void normalise(String email, double funds) {
+        FileIO fileIO = new FileIO();
+        ArrayList<String> records = new ArrayList<>();
+        fileIO.forEachCustomer(fileName, customer -> {
+            if (customer.getEmail().equals(email)) {
+                customer.setFunds(funds);
+            }
+            records.add(formatRecord(customer));
+        });
+        try {
+            fileIO.replaceDurably(fileName, records);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing customer file: " + e.getMessage());
+        }
+    }
+
+    private static String formatRecord(Customer customer) {
+        return customer.getEmail() + "," + customer.getPassword() + "," + customer.getFirstName() + ","
+                + customer.getLastName() + "," + customer.getDateOfBirth() + "," + customer.getAddress() + ","
+                + customer.getMobileNumber() + "," + formatFunds(customer.getFunds()) + ","
+                + customer.getMembershipStatus();
+    }
+
+    private static String formatFunds(double funds) {
+        // the root locale, so the funds are written with a decimal point whatever the default locale
+        return String.format(Locale.ROOT, "%" + FUNDS_WIDTH + ".2f", funds);
+    }
+}
@@ -0,0 +1,148 @@
+package util;
+
+import java.util.regex.Pattern;
+
+/**
+ * A rule for one field of a record, such as a product's name or price.
+ * A rule knows the type of its field, text or a number or true or false, and what a valid value looks like:
+ * text must match a pattern compiled once with the rule, and numbers must not be below a minimum. Checking a
+ * value never throws; a value which breaks the rule is described by a message naming the field, and a valid
+ * value gives null.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public final class FieldRule {
+    private enum Kind { TEXT, DECIMAL, WHOLE_NUMBER, TRUE_OR_FALSE }
+
+    private final String label;
+    private final Kind kind;
+    private final Pattern pattern;
+    private final double minimum;
+    private final boolean minimumAllowed;
+    private final String message;
+
+    private FieldRule(String label, Kind kind, Pattern pattern, double minimum, boolean minimumAllowed,
+                      String requirement) {
+        this.label = label;
+        this.kind = kind;
+        this.pattern = pattern;
+        this.minimum = minimum;
+        this.minimumAllowed = minimumAllowed;
+        this.message = label + " " + requirement;
+    }
+
+    /**
+     * Creates a rule for a text field.
+     *
+     * @param label       the name of the field, as shown to the user
+     * @param pattern     the pattern the whole value must match
+     * @param requirement what the pattern requires, to follow the label in messages
+     * @return the FieldRule
+     */
+    public static FieldRule text(String label, Pattern pattern, String requirement) {
+        return new FieldRule(label, Kind.TEXT, pattern, 0, true, requirement);
+    }
+
+    /**
+     * Creates a rule for a decimal number greater than zero.
+     *
+     * @param label the name of the field, as shown to the user
+     * @return the FieldRule
+     */
+    public static FieldRule positiveDecimal(String label) {
+        return new FieldRule(label, Kind.DECIMAL, null, 0, false, "must be a number greater than 0");
+    }
+
+    /**
+     * Creates a rule for a decimal number of zero or more.
+     *
+     * @param label the name of the field, as shown to the user
+     * @return the FieldRule
+     */
+    public static FieldRule nonNegativeDecimal(String label) {
+        return new FieldRule(label, Kind.DECIMAL, null, 0, true, "must be a number of at least 0");
+    }
+
+    /**
+     * Creates a rule for a whole number with a minimum.
+     *
+     * @param label   the name of the field, as shown to the user
+     * @param minimum the smallest valid value
+     * @return the FieldRule
+     */
+    public static FieldRule wholeNumberAtLeast(String label, int minimum) {
+        return new FieldRule(label, Kind.WHOLE_NUMBER, null, minimum, true,
+                "must be a whole number of at least " + minimum);
+    }
+
+    /**
+     * Creates a rule for a field which is true or false, in any case.
+     *
+     * @param label the name of the field, as shown to the user
+     * @return the FieldRule
+     */
+    public static FieldRule trueOrFalse(String label) {
+        return new FieldRule(label, Kind.TRUE_OR_FALSE, null, 0, true, "must be true or false");
+    }
+
+    /**
+     * Returns the name of the field.
+     *
+     * @return the label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Checks a value as typed or read from a file.
+     *
+     * @param value the value to check
+     * @return why the value is not valid, or null if it is
+     */
+    public String check(CharSequence value) {
+        switch (kind) {
+            case TEXT:
+                return pattern.matcher(value).matches() ? null : message;
+            case DECIMAL:
+                return StringValidation.isDouble(value) ? check(StringValidation.parseDouble(value, 0)) : message;
+            case WHOLE_NUMBER:
+                return StringValidation.isInteger(value) ? check(StringValidation.parseInt(value, 0)) : message;
+            default:
+                return hasType(value) ? null : message;
+        }
+    }
+
+    /**
+     * Checks a number which has already been parsed. Infinite values are not valid. The value is only
+     * compared with the minimum, so this should not be used for a text field.
+     *
+     * @param value the value to check
+     * @return why the value is not valid, or null if it is
+     */
+    public String check(double value) {
+        boolean valid = (minimumAllowed ? value >= minimum : value > minimum) && Double.isFinite(value);
+        return valid && (kind != Kind.WHOLE_NUMBER || value == Math.rint(value)) ? null : message;
+    }
+
+    /**
+     * Checks only that a value has the type of the field, whatever its content. Files written by earlier
+     * versions of the system are loaded against this, so that records made under looser rules still load.
+     *
+     * @param value the value to check
+     * @return true if text, or a number or true or false as the field requires
+     */
+    public boolean hasType(CharSequence value) {
+        switch (kind) {
+            case DECIMAL:
+                return StringValidation.isDouble(value);
+            case WHOLE_NUMBER:
+                return StringValidation.isInteger(value);
+            case TRUE_OR_FALSE:
+                return StringValidation.isBoolean(value);
+            default:
+                return true;
+        }
+    }
+}
@@ -3,12 +3,24 @@ package util;
 import entities.Customer;
 import entities.Inventory;
 import entities.Product;
+import entities.ShoppingCart;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Class which performs file input and output
+ * How long each read and write of a whole file takes is recorded in the metrics registry.
  *
  * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
  * @version 5/16/2024
@@ -17,6 +29,8 @@ import java.util.ArrayList;
 public class FileIO {
     private final String INVENTORY_FILE = "inventory.txt";
     private final String USERS_FILE = "user.txt";
+    private static final LatencyRecorder READ_LATENCY = MetricsRegistry.getDefault().latency("file.read");
+    private static final LatencyRecorder WRITE_LATENCY = MetricsRegistry.getDefault().latency("file.write");
 
     /**
      * Method to perform input from a file.
@@ -25,6 +39,7 @@ public class FileIO {
      * @return A String value with the contents of the file.
      */
     public ArrayList<String> readFile(String inputFileName) {
+        long start = System.nanoTime();
         ArrayList<String> products = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(inputFileName))) {
             String product;
@@ -36,6 +51,7 @@ public class FileIO {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        READ_LATENCY.record(System.nanoTime() - start);
         return products;
     }
 
@@ -45,6 +61,7 @@ public class FileIO {
      * @param inventory the inventory object containing the products
      */
     public void writeInventoryToFile(Inventory inventory) {
+        long start = System.nanoTime();
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(INVENTORY_FILE))) {
             for (Product product : inventory.getProducts()) {
                 String line = product.toStringForFileIO();
@@ -54,6 +71,7 @@ public class FileIO {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        WRITE_LATENCY.record(System.nanoTime() - start);
     }
 
     /**
@@ -63,6 +81,7 @@ public class FileIO {
      * @param customers An ArrayList containing Customer objects to be written to the file.
      */
     public void writeCustomerFile(String filePath, ArrayList<Customer> customers) {
+        long start = System.nanoTime();
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
             for (Customer customer: customers) {
                 String line = customer.toStringForUpdate();
@@ -72,6 +91,7 @@ public class FileIO {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        WRITE_LATENCY.record(System.nanoTime() - start);
     }
 
     /**
@@ -91,27 +111,129 @@ public class FileIO {
             return inventory;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(INVENTORY_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length == 8) {
-                    String productName = data[0].trim();
-                    String brand = data[1].trim();
-                    String category = data[2].trim();
-                    String subCategory = data[3].trim();
-                    double price = Double.parseDouble(data[4].trim());
-                    double memberPrice = Double.parseDouble(data[5].trim());
-                    int quantity = Integer.parseInt(data[6].trim());
-                    String description = data[7].trim();
-                    Product product = new Product(productName, brand, category, subCategory, price, memberPrice, quantity, description);
-                    inventory.addProduct(product);
+        forEachProduct(INVENTORY_FILE, inventory::addProduct);
+        return inventory;
+    }
+
+    /**
+     * Reads every product record in a file, parsing each line exactly once. Large files are split into
+     * chunks which are parsed in parallel.
+     *
+     * @param inputFileName A String value to provide the name of the file.
+     * @return An ArrayList of the products in file order.
+     */
+    public ArrayList<Product> readProducts(String inputFileName) {
+        long start = System.nanoTime();
+        ArrayList<Product> products = new ChunkedLoader().readRecords(inputFileName, this::readProduct);
+        READ_LATENCY.record(System.nanoTime() - start);
+        return products;
+    }
+
+    /**
+     * Streams the product records of a file, passing each product on as soon as its line is parsed.
+     * Malformed lines are reported with their line number and skipped.
+     *
+     * @param inputFileName A String value to provide the name of the file.
+     * @param action        receives each product in file order
+     * @return the number of products read
+     */
+    public int forEachProduct(String inputFileName, Consumer<Product> action) {
+        long start = System.nanoTime();
+        int count = 0;
+        try (RecordReader reader = new RecordReader(inputFileName)) {
+            while (reader.next()) {
+                Product product = readProduct(reader);
+                if (product != null) {
+                    action.accept(product);
+                    count++;
                 }
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new RuntimeException("Error reading " + inputFileName + ": " + e.getMessage());
         }
-        return inventory;
+        READ_LATENCY.record(System.nanoTime() - start);
+        return count;
+    }
+
+    /**
+     * Parses the current record of a reader into a Product.
+     *
+     * @param reader the reader positioned at a product record
+     * @return the parsed Product, or null if the record is malformed
+     */
+    public Product readProduct(RecordReader reader) {
+        if (!reader.expectFields(StringValidation.PRODUCT_RULES.size())) {
+            return null;
+        }
+        double price = reader.getDouble(4);
+        double memberPrice = reader.getDouble(5);
+        int quantity = reader.getInt(6);
+        if (reader.isMalformed()) {
+            return null;
+        }
+        return new Product(reader.getString(0), reader.getString(1), reader.getString(2), reader.getString(3),
+                price, memberPrice, quantity, reader.getString(7));
+    }
+
+    /**
+     * Streams the customer records of a file, passing each customer on as soon as its line is parsed.
+     * Each customer has an empty shopping cart. Malformed lines are reported with their line number and skipped.
+     *
+     * @param inputFileName A String value to provide the name of the file.
+     * @param action        receives each customer in file order
+     * @return the number of customers read
+     */
+    public int forEachCustomer(String inputFileName, Consumer<Customer> action) {
+        long start = System.nanoTime();
+        int count = 0;
+        try (RecordReader reader = new RecordReader(inputFileName)) {
+            while (reader.next()) {
+                if (!reader.expectFields(StringValidation.CUSTOMER_RULES.size())) {
+                    continue;
+                }
+                double funds = reader.getDouble(7);
+                if (reader.isMalformed()) {
+                    continue;
+                }
+                action.accept(new Customer(reader.getString(0), reader.getString(1), reader.getString(2),
+                        reader.getString(3), reader.getString(4), reader.getString(5), reader.getString(6), funds,
+                        reader.getBoolean(8), new ShoppingCart()));
+                count++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + inputFileName + ": " + e.getMessage());
+        }
+        READ_LATENCY.record(System.nanoTime() - start);
+        return count;
+    }
+
+    /**
+     * Parses a line of the inventory file into a Product. Fields are only checked for their type, so that
+     * products saved under earlier rules still load.
+     *
+     * @param line A comma-separated product record.
+     * @return the parsed Product, or null if the line does not have eight fields or a number is malformed
+     */
+    public Product parseProduct(String line) {
+        String[] data = line.split(",");
+        if (data.length != StringValidation.PRODUCT_RULES.size()) {
+            return null;
+        }
+        String productName = data[0].trim();
+        String brand = data[1].trim();
+        String category = data[2].trim();
+        String subCategory = data[3].trim();
+        for (int field = 0; field < data.length; field++) {
+            data[field] = data[field].trim();
+            if (!StringValidation.PRODUCT_RULES.get(field).hasType(data[field])) {
+                return null;
+            }
+        }
+        double price = StringValidation.parseDouble(data[4], 0);
+        double memberPrice = StringValidation.parseDouble(data[5], 0);
+        int quantity = StringValidation.parseInt(data[6], 0);
+        String description = data[7].trim();
+        return new Product(productName, brand, category, subCategory, price, memberPrice, quantity, description);
     }
 
     /**
@@ -121,6 +243,7 @@ public class FileIO {
      * @param contents       A String value containing the contents to be written to the file.
      */
     public void writeFile(String outputFileName, String contents) {
+        long start = System.nanoTime();
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFileName, true))) {
             writer.write(contents);
             writer.newLine();
@@ -128,6 +251,7 @@ public class FileIO {
         } catch (IOException e) {
             throw new RuntimeException("Error writing to file: " + e.getMessage());
         }
+        WRITE_LATENCY.record(System.nanoTime() - start);
     }
 
     /**
@@ -137,6 +261,7 @@ public class FileIO {
      * @param contents       An ArrayList of products to write to the file.
      */
     public void writeOver(String outputFileName, ArrayList<String> contents) {
+        long start = System.nanoTime();
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputFileName))) {
             for (String product : contents) {
                 bw.write(product);
@@ -149,5 +274,50 @@ public class FileIO {
             System.out.println("Error writing to the file.");
             e.printStackTrace();
         }
+        WRITE_LATENCY.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Replaces a file so that it survives a crash whole. The contents are written to a temporary file which
+     * is forced to disk, the temporary file is renamed over the file in one step, and the directory is
+     * forced so the rename itself is on disk before this returns. A crash at any point leaves either the
+     * old file or the new one.
+     *
+     * @param outputFileName the name of the file to replace
+     * @param contents       the lines to write
+     * @throws IOException if the file cannot be written, forced or renamed
+     */
+    public void replaceDurably(String outputFileName, List<String> contents) throws IOException {
+        long start = System.nanoTime();
+        Path target = Paths.get(outputFileName).toAbsolutePath();
+        Path temporary = Paths.get(outputFileName + ".tmp").toAbsolutePath();
+        StringBuilder text = new StringBuilder();
+        for (String line : contents) {
+            text.append(line).append(System.lineSeparator());
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(text.toString());
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(target.getParent());
+        WRITE_LATENCY.record(System.nanoTime() - start);
+    }
+
+    // makes renames within a directory durable; some platforms cannot open a directory, and do not need to
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
     }
 }
\ No newline at end of file
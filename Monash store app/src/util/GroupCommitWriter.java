@@ -0,0 +1,164 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends lines to a file channel in groups, with one fsync per group.
+ * Lines appended while a group is being written wait in a queue. The writer thread takes the first
+ * waiting line, collects whatever else arrives within a short window, writes them all with one write
+ * and one fsync, then completes every line of the group together. Each fsync is shared by all the
+ * lines written with it, so durable appends get cheaper as more threads append at once.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class GroupCommitWriter {
+    public static final Duration DEFAULT_WINDOW = Duration.ofMillis(1);
+    private static final int MAX_GROUP = 512;
+    private final FileChannel channel;
+    private final long windowNanos;
+    private final LinkedBlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private long groups;
+    private long lines;
+
+    /**
+     * A line waiting to be written.
+     */
+    private static class Append {
+        private final byte[] bytes;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private Append(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Parameterized constructor which starts the writer thread.
+     *
+     * @param channel the channel to append to, opened for appending
+     * @param window  how long to wait for more lines after the first line of a group arrives
+     * @param name    the name of the writer thread
+     */
+    public GroupCommitWriter(FileChannel channel, Duration window, String name) {
+        this.channel = channel;
+        this.windowNanos = window.toNanos();
+        this.writerThread = new Thread(this::writeGroups, name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues a line to be appended.
+     *
+     * @param line the line to append, without a line separator
+     * @return a future which completes once the line has been written and forced to disk
+     */
+    public CompletableFuture<Void> append(String line) {
+        Append append = new Append((line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        queue.add(append);
+        return append.written;
+    }
+
+    /**
+     * Waits until every line queued so far has been written and forced to disk.
+     */
+    public void flush() {
+        Append marker = new Append(new byte[0]);
+        queue.add(marker);
+        marker.written.join();
+    }
+
+    /**
+     * Returns the number of groups written, each of which took one fsync.
+     *
+     * @return the number of groups
+     */
+    public synchronized long getGroups() {
+        return groups;
+    }
+
+    /**
+     * Returns the number of lines written.
+     *
+     * @return the number of lines
+     */
+    public synchronized long getLines() {
+        return lines;
+    }
+
+    /**
+     * Writes everything queued, then stops the writer thread.
+     */
+    public void close() {
+        flush();
+        writerThread.interrupt();
+    }
+
+    private void writeGroups() {
+        ArrayList<Append> group = new ArrayList<>();
+        while (true) {
+            try {
+                group.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                queue.drainTo(group, MAX_GROUP - group.size());
+                while (group.size() < MAX_GROUP) {
+                    Append next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    queue.drainTo(group, MAX_GROUP - group.size());
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            write(group);
+            group.clear();
+        }
+    }
+
+    private void write(ArrayList<Append> group) {
+        int size = 0;
+        for (Append append : group) {
+            size += append.bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Append append : group) {
+            buffer.put(append.bytes);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            RuntimeException error = new RuntimeException("Error writing journal: " + e.getMessage());
+            for (Append append : group) {
+                append.written.completeExceptionally(error);
+            }
+            return;
+        }
+        synchronized (this) {
+            groups++;
+            for (Append append : group) {
+                if (append.bytes.length > 0) {
+                    lines++;
+                }
+            }
+        }
+        for (Append append : group) {
+            append.written.complete(null);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package util;
+
+import entities.CartItem;
+import entities.Inventory;
+import entities.OrderRecord;
+import entities.Product;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Inventory store which keeps an append-only journal of inventory changes.
+ * Every stock or product change is appended to the journal as one line instead of rewriting the
+ * inventory file. The inventory file is a snapshot which the journal is replayed on top of, and is
+ * only rewritten when the journal is checkpointed. Lines are appended through a GroupCommitWriter, so
+ * orders placed at the same time share one fsync.
+ * <p>
+ * Journal lines have the form:
+ * <pre>
+ * A,&lt;product record&gt;            product added
+ * B,&lt;n&gt;                         start of n product added lines which were added together
+ * C,&lt;n&gt;                         end of the n product added lines
+ * E,&lt;key&gt;,&lt;product record&gt;      product with the given key edited
+ * D,&lt;key&gt;                       product deleted
+ * Q,&lt;key&gt;,&lt;delta&gt;               product quantity changed by delta
+ * P,&lt;funds&gt;,&lt;ledger line&gt;,            order, with the customer's remaining funds and its order ledger line
+ * </pre>
+ * An order line ends with a comma, so a line torn by a crash is never mistaken for a whole order, and the
+ * products added together are applied only if the line ending them was written. The ledger lines of the
+ * orders since the last checkpoint are kept when the journal is replayed, so the order ledger can be
+ * brought up to date from them. Products are named by key, which is unique: the system refuses to add a
+ * product, or edit one, to the name and brand of another.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class InventoryJournal implements InventoryStore {
+    private static final int CHECKPOINT_INTERVAL = 1000;
+    private final String journalFileName;
+    private final String snapshotFileName;
+    private FileChannel channel;
+    private GroupCommitWriter writer;
+    private int entriesSinceCheckpoint;
+    private final Map<String, Double> recordedFunds = new LinkedHashMap<>();
+    private final List<String> recordedOrders = new ArrayList<>();
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Constructor which opens the journal for appending.
+     *
+     * @param journalFileName  the name of the journal file
+     * @param snapshotFileName the name of the inventory snapshot file the journal applies to
+     */
+    public InventoryJournal(String journalFileName, String snapshotFileName) {
+        this.journalFileName = journalFileName;
+        this.snapshotFileName = snapshotFileName;
+        open();
+    }
+
+    @Override
+    public Inventory load() {
+        Inventory inventory = new Inventory();
+        if (Files.exists(Paths.get(snapshotFileName))) {
+            inventory.setProducts(new FileIO().readProducts(snapshotFileName));
+        }
+        replay(inventory);
+        return inventory;
+    }
+
+    @Override
+    public void recordAdd(Product product) {
+        append("A," + product.toStringForFileIO()).join();
+    }
+
+    @Override
+    public void recordAdds(List<Product> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        StringBuilder batch = new StringBuilder("B,").append(products.size());
+        for (Product product : products) {
+            batch.append(System.lineSeparator()).append("A,").append(product.toStringForFileIO());
+        }
+        batch.append(System.lineSeparator()).append("C,").append(products.size());
+        synchronized (this) {
+            // counted as one entry per line, as the checkpoint interval is measured in lines
+            entriesSinceCheckpoint += products.size() + 1;
+        }
+        append(batch.toString()).join();
+    }
+
+    @Override
+    public void recordEdit(String oldKey, Product product) {
+        append("E," + oldKey + "," + product.toStringForFileIO()).join();
+    }
+
+    @Override
+    public void recordDelete(Product product) {
+        append("D," + product.getKey()).join();
+    }
+
+    @Override
+    public void recordQuantityChange(Product product, int delta) {
+        append("Q," + product.getKey() + "," + delta).join();
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> recordOrder(String email, long fundsCents, List<CartItem> items,
+                                                            String ledgerEntry) {
+        // the ledger line holds the customer, products and quantities, so only the funds are added
+        line.setLength(0);
+        line.append("P,");
+        Money.appendCents(line, fundsCents).append(',').append(ledgerEntry).append(',');
+        return append(line.toString());
+    }
+
+    @Override
+    public boolean keepsOrders() {
+        return true;
+    }
+
+    @Override
+    public List<String> getRecordedOrders() {
+        return recordedOrders;
+    }
+
+    @Override
+    public Map<String, Double> getRecordedFunds() {
+        return recordedFunds;
+    }
+
+    /**
+     * Applies the journal to an inventory loaded from the snapshot file.
+     * Lines which cannot be applied, such as a line torn by a crash, are skipped. Quantity changes do not
+     * move products, so the inventory should be put in listing order after it has been replayed.
+     *
+     * @param inventory the inventory loaded from the snapshot
+     * @return the number of journal lines applied
+     */
+    public int replay(Inventory inventory) {
+        if (!Files.exists(Paths.get(journalFileName))) {
+            return 0;
+        }
+        FileIO fileIO = new FileIO();
+        int applied = 0;
+        int lines = 0;
+        recordedFunds.clear();
+        recordedOrders.clear();
+        try (BufferedReader reader = new BufferedReader(new FileReader(journalFileName))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                if (line.startsWith("B,")) {
+                    List<String> batch = readBatch(reader, line);
+                    lines += batch.size();
+                    applied += applyBatch(inventory, fileIO, line, batch);
+                } else if (apply(inventory, fileIO, line)) {
+                    applied++;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error replaying inventory journal: " + e.getMessage());
+        }
+        entriesSinceCheckpoint = lines;
+        return applied;
+    }
+
+    @Override
+    public synchronized boolean isCheckpointDue() {
+        return entriesSinceCheckpoint >= CHECKPOINT_INTERVAL;
+    }
+
+    /**
+     * Rewrites the snapshot from the inventory and empties the journal. The funds of recorded orders are
+     * dropped with the journal, so the customer file must be durable before the journal is checkpointed.
+     * The journal is only emptied once the new snapshot is wholly on disk, so a crash or a failed write
+     * leaves the old snapshot and the journal to replay on top of it.
+     *
+     * @param inventory the current inventory
+     */
+    @Override
+    public synchronized void checkpoint(Inventory inventory) {
+        writer.flush();
+        ArrayList<String> lines = new ArrayList<>(inventory.size());
+        for (Product product : inventory.getProducts()) {
+            lines.add(product.toStringForFileIO());
+        }
+        try {
+            new FileIO().replaceDurably(snapshotFileName, lines);
+            channel.truncate(0);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new RuntimeException("Error checkpointing inventory journal: " + e.getMessage());
+        }
+        entriesSinceCheckpoint = 0;
+        recordedFunds.clear();
+        recordedOrders.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        writer.close();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private boolean apply(Inventory inventory, FileIO fileIO, String line) {
+        String[] fields = line.split(",", 3);
+        try {
+            switch (fields[0]) {
+                case "A": {
+                    Product product = fileIO.parseProduct(line.substring(2));
+                    if (product == null) {
+                        return false;
+                    }
+                    inventory.addProduct(product);
+                    return true;
+                }
+                case "E": {
+                    Product product = inventory.findProductByKey(fields[1]);
+                    Product edited = fileIO.parseProduct(fields[2]);
+                    if (product == null || edited == null) {
+                        return false;
+                    }
+                    return inventory.replaceProduct(product, edited);
+                }
+                case "D": {
+                    Product product = inventory.findProductByKey(fields[1]);
+                    return product != null && inventory.removeProduct(product);
+                }
+                case "Q": {
+                    Product product = inventory.findProductByKey(fields[1]);
+                    if (product == null) {
+                        return false;
+                    }
+                    // the key is unchanged, so the product does not need re-indexing
+                    product.setQuantity(product.getQuantity() + Integer.parseInt(fields[2].trim()));
+                    return true;
+                }
+                case "P":
+                    return applyPlacedOrder(inventory, fields);
+                default:
+                    return false;
+            }
+        } catch (RuntimeException e) {
+            // a torn or corrupt line
+            return false;
+        }
+    }
+
+    // the lines of a batch up to and including the line ending it, or up to the end of a torn journal
+    private static List<String> readBatch(BufferedReader reader, String header) throws IOException {
+        List<String> batch = new ArrayList<>();
+        String end = "C," + header.substring(2);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            batch.add(line);
+            if (line.equals(end) || !line.startsWith("A,")) {
+                break;
+            }
+        }
+        return batch;
+    }
+
+    // adds the products of a batch together, or none of them if the batch is not whole
+    private int applyBatch(Inventory inventory, FileIO fileIO, String header, List<String> batch) {
+        int count = batch.size() - 1;
+        if (count < 0 || !header.equals("B," + count) || !batch.get(count).equals("C," + count)) {
+            return 0;
+        }
+        List<Product> products = new ArrayList<>(count);
+        try {
+            for (String line : batch.subList(0, count)) {
+                Product product = fileIO.parseProduct(line.substring(2));
+                if (product == null) {
+                    return 0;
+                }
+                products.add(product);
+            }
+        } catch (RuntimeException e) {
+            return 0;
+        }
+        inventory.addProducts(products);
+        return count;
+    }
+
+    private boolean applyPlacedOrder(Inventory inventory, String[] fields) {
+        String ledgerEntry = fields[2];
+        if (!ledgerEntry.endsWith(",")) {
+            return false;
+        }
+        ledgerEntry = ledgerEntry.substring(0, ledgerEntry.length() - 1);
+        OrderRecord order = OrderLedger.parseOrder(ledgerEntry);
+        if (order == null) {
+            return false;
+        }
+        // check every product before changing any, so an order is applied whole or not at all
+        List<OrderRecord.Line> lines = order.getLines();
+        Product[] products = new Product[lines.size()];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = inventory.findProductByKey(lines.get(i).getProductKey());
+            if (products[i] == null) {
+                return false;
+            }
+        }
+        double funds = Double.parseDouble(fields[1]);
+        for (int i = 0; i < products.length; i++) {
+            products[i].setQuantity(products[i].getQuantity() - lines.get(i).getQuantity());
+        }
+        recordedFunds.put(order.getEmail(), funds);
+        recordedOrders.add(ledgerEntry);
+        return true;
+    }
+
+    private synchronized CompletableFuture<Void> append(String line) {
+        entriesSinceCheckpoint++;
+        return writer.append(line);
+    }
+
+    private void open() {
+        try {
+            Path path = Paths.get(journalFileName);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            writer = new GroupCommitWriter(channel, GroupCommitWriter.DEFAULT_WINDOW, "inventory-journal-writer");
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening inventory journal: " + e.getMessage());
+        }
+    }
+}
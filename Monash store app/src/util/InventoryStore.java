@@ -0,0 +1,120 @@
+package util;
+
+import entities.CartItem;
+import entities.Inventory;
+import entities.Product;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Persistent storage for the products of the inventory.
+ * A store loads the inventory once and is then told about each change made to it, so that it can
+ * persist the change without rewriting every product.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public interface InventoryStore {
+
+    /**
+     * Loads the stored products into a new inventory, in no particular order.
+     *
+     * @return the loaded Inventory
+     */
+    Inventory load();
+
+    /**
+     * Records a product added to the inventory.
+     *
+     * @param product the added product
+     */
+    void recordAdd(Product product);
+
+    /**
+     * Records products added to the inventory together, as one change.
+     *
+     * @param products the added products
+     */
+    void recordAdds(List<Product> products);
+
+    /**
+     * Records an edit of a product.
+     *
+     * @param oldKey  the key of the product before it was edited
+     * @param product the edited product
+     */
+    void recordEdit(String oldKey, Product product);
+
+    /**
+     * Records a product deleted from the inventory.
+     *
+     * @param product the deleted product
+     */
+    void recordDelete(Product product);
+
+    /**
+     * Records a change to the quantity of a product.
+     *
+     * @param product the product whose quantity changed
+     * @param delta   the change in quantity
+     */
+    void recordQuantityChange(Product product, int delta);
+
+    /**
+     * Records the stock sold by an order together with the customer's remaining funds, as one change.
+     *
+     * @param email       the email of the customer who placed the order
+     * @param fundsCents  the customer's funds after the order, in cents
+     * @param items       the ordered items, whose stock has been committed
+     * @param ledgerEntry the order's line in the order ledger, kept with the order if the store keeps orders
+     * @return a future which completes once the order is durable
+     */
+    CompletableFuture<Void> recordOrder(String email, long fundsCents, List<CartItem> items, String ledgerEntry);
+
+    /**
+     * Checks whether the store keeps the ledger line of each order it records until its next checkpoint. An
+     * order is then committed once the store has recorded it, as the ledger can be brought up to date from
+     * the store after a crash.
+     *
+     * @return true if recorded orders can be recovered from the store
+     */
+    boolean keepsOrders();
+
+    /**
+     * Returns the ledger lines of the orders recorded since the last checkpoint, as found when the store
+     * was loaded.
+     *
+     * @return the ledger lines, oldest first; empty if the store does not keep orders
+     */
+    List<String> getRecordedOrders();
+
+    /**
+     * Returns the remaining funds of each customer whose orders were recorded since the last checkpoint,
+     * as found when the store was loaded. Applying them again brings the customer file up to date with
+     * orders which were recorded before a crash but whose funds were never written.
+     *
+     * @return the funds by customer email
+     */
+    Map<String, Double> getRecordedFunds();
+
+    /**
+     * Makes everything recorded so far durable, compacting the store where it supports it.
+     *
+     * @param inventory the current inventory
+     */
+    void checkpoint(Inventory inventory);
+
+    /**
+     * Checks whether enough has changed since the last checkpoint that the store should be checkpointed.
+     *
+     * @return true if a checkpoint is due
+     */
+    boolean isCheckpointDue();
+
+    /**
+     * Closes the files of the store.
+     */
+    void close();
+}
@@ -0,0 +1,134 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long an operation takes and reports percentiles over every run since the recorder was made.
+ * Runs are counted in a histogram whose buckets grow with the latency: latencies under 256 nanoseconds have
+ * a bucket each, and each larger power of two is split into 128 buckets, so a percentile is within 1% of
+ * the true value while the histogram stays the same size however many runs are recorded. Recording only
+ * increments counters, without locking, so any number of threads can record at once.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class LatencyRecorder {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // latencies are capped at about eighteen minutes, which keeps the histogram to a few thousand buckets
+    private static final long HIGHEST_TRACKABLE = (1L << 40) - 1;
+    private static final int BUCKETS = bucketOf(HIGHEST_TRACKABLE) + 1;
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator highest = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param name the name of the recorded operation
+     */
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the recorded operation.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records one run of the operation.
+     *
+     * @param nanos how long the run took, in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, HIGHEST_TRACKABLE));
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        highest.accumulate(value);
+    }
+
+    /**
+     * Returns the number of runs recorded.
+     *
+     * @return the number of runs
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the total time of every run recorded.
+     *
+     * @return the total in nanoseconds
+     */
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * Returns a percentile of the runs recorded. Runs recorded while this is computed may or may not be
+     * counted.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency at that percentile in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long size = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] = buckets.get(bucket);
+            size += counts[bucket];
+        }
+        if (size == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * size));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(bucket), highest.get());
+            }
+        }
+        return highest.get();
+    }
+
+    /**
+     * Returns a summary of the recorded latencies.
+     *
+     * @return the name, count, p50 and p99 of the operation in milliseconds
+     */
+    public String toString() {
+        return String.format("%s: count=%d p50=%.3fms p99=%.3fms", name, getCount(), getPercentile(50) / 1e6,
+                getPercentile(99) / 1e6);
+    }
+
+    // latencies below twice the number of sub-buckets have a bucket each; above that, the bucket is the
+    // sub-bucket count times the power of two dropped, plus the top bits of the latency
+    private static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValueIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket - shift * SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
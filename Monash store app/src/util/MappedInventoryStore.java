@@ -0,0 +1,404 @@
+package util;
+
+import entities.CartItem;
+import entities.Inventory;
+import entities.Product;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Inventory store which keeps products as fixed-width binary records in a memory-mapped file.
+ * Strings are kept once each in a separate string heap file and records refer to them by offset,
+ * so changing the quantity of a product is an in-place write of four bytes.
+ * <p>
+ * Record file layout: a header holding a magic number and the number of record slots used, followed by
+ * one record per slot:
+ * <pre>
+ * flags (1 = live)    int
+ * quantity            int
+ * price               double
+ * member price        double
+ * name, brand, category, sub-category, description   int string heap offsets
+ * replaced slot        int, one more than the slot of the record this one replaces, or 0
+ * </pre>
+ * Each string heap entry is an int byte length followed by the UTF-8 bytes of the string.
+ * <p>
+ * A record is written whole and forced to disk before its flags make it live, and making a record live or
+ * dead is a single aligned four byte write, so a crash never leaves a half-written record live. An edited
+ * product is written to a new slot naming the slot it replaces; once it is live the old record is killed,
+ * and a load which finds both live keeps only the new one. Orders change quantities in place and share
+ * forces: the first order to find no force pending queues one on the forcing thread, and every order
+ * written before that force starts completes with it.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class MappedInventoryStore implements InventoryStore {
+    private static final int MAGIC = 0x4D4D5331;
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 4;
+    private static final int RECORD_SIZE = 48;
+    private static final int QUANTITY_OFFSET = 4;
+    private static final int PRICE_OFFSET = 8;
+    private static final int MEMBER_PRICE_OFFSET = 16;
+    private static final int STRINGS_OFFSET = 24;
+    private static final int REPLACES_OFFSET = 44;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int LIVE = 1;
+
+    private final FileChannel recordChannel;
+    private final FileChannel stringChannel;
+    private MappedByteBuffer records;
+    private int capacity;
+    private int recordCount;
+    private long stringHeapSize;
+    private final HashMap<String, Integer> slotsByKey = new HashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private final HashMap<String, Integer> stringOffsets = new HashMap<>();
+    private final ExecutorService forcer;
+    // completes once the orders recorded since the last force are on disk; null if none are waiting
+    private CompletableFuture<Void> pendingForce;
+
+    /**
+     * Constructor which opens, or creates, the record and string heap files.
+     *
+     * @param recordFileName the name of the record file
+     * @param stringFileName the name of the string heap file
+     */
+    public MappedInventoryStore(String recordFileName, String stringFileName) {
+        try {
+            recordChannel = FileChannel.open(Paths.get(recordFileName), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            stringChannel = FileChannel.open(Paths.get(stringFileName), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            stringHeapSize = stringChannel.size();
+            long size = recordChannel.size();
+            if (size < HEADER_SIZE) {
+                map(INITIAL_CAPACITY);
+                records.putInt(0, MAGIC);
+                records.putInt(COUNT_OFFSET, 0);
+            } else {
+                map((int) ((size - HEADER_SIZE) / RECORD_SIZE));
+                if (records.getInt(0) != MAGIC) {
+                    throw new IllegalStateException(recordFileName + " is not an inventory record file");
+                }
+                recordCount = records.getInt(COUNT_OFFSET);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening inventory store: " + e.getMessage());
+        }
+        forcer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-store-forcer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns true if the store holds no records, such as when it has just been created.
+     *
+     * @return true if no product has ever been stored
+     */
+    public boolean isEmpty() {
+        return recordCount == 0;
+    }
+
+    /**
+     * Stores every product of a list, such as when moving the inventory from another store. The records are
+     * all forced to disk before any of them is made live, so they take two forces however many there are.
+     *
+     * @param products the products to store
+     */
+    public synchronized void importProducts(List<Product> products) {
+        int[] slots = new int[products.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = place(products.get(i), -1);
+        }
+        force();
+        for (int i = 0; i < slots.length; i++) {
+            records.putInt(position(slots[i]), LIVE);
+            slotsByKey.putIfAbsent(products.get(i).getKey(), slots[i]);
+        }
+        force();
+    }
+
+    @Override
+    public synchronized Inventory load() {
+        ArrayList<Product> products = new ArrayList<>(recordCount);
+        HashMap<Integer, String> strings = new HashMap<>();
+        slotsByKey.clear();
+        freeSlots.clear();
+        boolean repaired = false;
+        // finish edits interrupted by a crash: a live record replacing another live one kills it
+        for (int slot = 0; slot < recordCount; slot++) {
+            int position = position(slot);
+            int replaced = records.getInt(position + REPLACES_OFFSET) - 1;
+            if (replaced >= 0) {
+                if (records.getInt(position) == LIVE && replaced < recordCount) {
+                    records.putInt(position(replaced), 0);
+                }
+                records.putInt(position + REPLACES_OFFSET, 0);
+                repaired = true;
+            }
+        }
+        if (repaired) {
+            force();
+        }
+        try {
+            MappedByteBuffer heap = stringChannel.map(FileChannel.MapMode.READ_ONLY, 0, stringHeapSize);
+            for (int slot = 0; slot < recordCount; slot++) {
+                int position = position(slot);
+                if (records.getInt(position) != LIVE) {
+                    freeSlots.add(slot);
+                    continue;
+                }
+                int stringsPosition = position + STRINGS_OFFSET;
+                Product product = new Product(readString(heap, records.getInt(stringsPosition), strings),
+                        readString(heap, records.getInt(stringsPosition + 4), strings),
+                        readString(heap, records.getInt(stringsPosition + 8), strings),
+                        readString(heap, records.getInt(stringsPosition + 12), strings),
+                        records.getDouble(position + PRICE_OFFSET),
+                        records.getDouble(position + MEMBER_PRICE_OFFSET),
+                        records.getInt(position + QUANTITY_OFFSET),
+                        readString(heap, records.getInt(stringsPosition + 16), strings));
+                products.add(product);
+                slotsByKey.putIfAbsent(product.getKey(), slot);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading inventory store: " + e.getMessage());
+        }
+        stringOffsets.clear();
+        strings.forEach((offset, string) -> stringOffsets.put(string, offset));
+        Inventory inventory = new Inventory();
+        inventory.setProducts(products);
+        return inventory;
+    }
+
+    @Override
+    public synchronized void recordAdd(Product product) {
+        int slot = place(product, -1);
+        force();
+        records.putInt(position(slot), LIVE);
+        force();
+        slotsByKey.putIfAbsent(product.getKey(), slot);
+    }
+
+    @Override
+    public void recordAdds(List<Product> products) {
+        importProducts(products);
+    }
+
+    // the edited record goes in a new slot, so the old one stays whole until the new one is live
+    @Override
+    public synchronized void recordEdit(String oldKey, Product product) {
+        Integer oldSlot = slotsByKey.remove(oldKey);
+        if (oldSlot == null) {
+            return;
+        }
+        int slot = place(product, oldSlot);
+        force();
+        records.putInt(position(slot), LIVE);
+        force();
+        records.putInt(position(oldSlot), 0);
+        records.putInt(position(slot) + REPLACES_OFFSET, 0);
+        force();
+        freeSlots.add(oldSlot);
+        slotsByKey.put(product.getKey(), slot);
+    }
+
+    @Override
+    public synchronized void recordDelete(Product product) {
+        Integer slot = slotsByKey.remove(product.getKey());
+        if (slot != null) {
+            records.putInt(position(slot), 0);
+            force();
+            freeSlots.add(slot);
+        }
+    }
+
+    @Override
+    public synchronized void recordQuantityChange(Product product, int delta) {
+        changeQuantity(product, delta);
+        force();
+    }
+
+    @Override
+    public synchronized void checkpoint(Inventory inventory) {
+        force();
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> recordOrder(String email, long fundsCents, List<CartItem> items,
+                                                            String ledgerEntry) {
+        // the funds are only written to the customer file and the order to the ledger, as records are
+        // updated in place
+        for (CartItem item : items) {
+            changeQuantity(item.getProduct(), -item.getQuantity());
+        }
+        if (pendingForce == null) {
+            pendingForce = new CompletableFuture<>();
+            forcer.execute(this::forcePending);
+        }
+        return pendingForce;
+    }
+
+    @Override
+    public boolean keepsOrders() {
+        return false;
+    }
+
+    @Override
+    public List<String> getRecordedOrders() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<String, Double> getRecordedFunds() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public boolean isCheckpointDue() {
+        // every change is already written in place; the operating system flushes the mapping
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        forcer.shutdown();
+        checkpoint(null);
+        try {
+            recordChannel.close();
+            stringChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // writes a product to a free slot without making it live, returning the slot
+    private int place(Product product, int replacedSlot) {
+        Integer slot = freeSlots.poll();
+        if (slot == null) {
+            slot = recordCount;
+            ensureCapacity(recordCount + 1);
+            recordCount++;
+            records.putInt(COUNT_OFFSET, recordCount);
+        }
+        int position = position(slot);
+        int stringsPosition = position + STRINGS_OFFSET;
+        records.putInt(stringsPosition, writeString(product.getProductName()));
+        records.putInt(stringsPosition + 4, writeString(product.getBrand()));
+        records.putInt(stringsPosition + 8, writeString(product.getCategory()));
+        records.putInt(stringsPosition + 12, writeString(product.getSubCategory()));
+        records.putInt(stringsPosition + 16, writeString(product.getDescription()));
+        records.putDouble(position + PRICE_OFFSET, product.getPrice());
+        records.putDouble(position + MEMBER_PRICE_OFFSET, product.getMemberPrice());
+        records.putInt(position + QUANTITY_OFFSET, product.getQuantity());
+        records.putInt(position + REPLACES_OFFSET, replacedSlot + 1);
+        return slot;
+    }
+
+    private void changeQuantity(Product product, int delta) {
+        Integer slot = slotsByKey.get(product.getKey());
+        if (slot != null) {
+            int position = position(slot) + QUANTITY_OFFSET;
+            records.putInt(position, records.getInt(position) + delta);
+        }
+    }
+
+    // strings first, as live records may refer to any of them
+    private void force() {
+        try {
+            stringChannel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing inventory store: " + e.getMessage());
+        }
+        records.force();
+    }
+
+    // runs on the forcing thread, outside the lock, so orders keep being written while the force runs
+    private void forcePending() {
+        CompletableFuture<Void> forced;
+        MappedByteBuffer mapped;
+        synchronized (this) {
+            forced = pendingForce;
+            pendingForce = null;
+            mapped = records;
+        }
+        try {
+            mapped.force();
+            forced.complete(null);
+        } catch (RuntimeException e) {
+            forced.completeExceptionally(e);
+        }
+    }
+
+    // returns the heap offset of the string, appending it to the heap the first time it is seen
+    private int writeString(String string) {
+        Integer offset = stringOffsets.get(string);
+        if (offset != null) {
+            return offset;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length);
+        buffer.putInt(bytes.length).put(bytes).flip();
+        try {
+            long position = stringHeapSize;
+            while (buffer.hasRemaining()) {
+                position += stringChannel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing inventory store: " + e.getMessage());
+        }
+        offset = (int) stringHeapSize;
+        stringHeapSize += 4 + bytes.length;
+        stringOffsets.put(string, offset);
+        return offset;
+    }
+
+    private static String readString(MappedByteBuffer heap, int offset, HashMap<Integer, String> strings) {
+        String string = strings.get(offset);
+        if (string == null) {
+            byte[] bytes = new byte[heap.getInt(offset)];
+            heap.get(offset + 4, bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            strings.put(offset, string);
+        }
+        return string;
+    }
+
+    private void ensureCapacity(int slots) {
+        if (slots > capacity) {
+            records.force();
+            map(Math.max(slots, capacity * 2));
+        }
+    }
+
+    private void map(int slots) {
+        try {
+            records = recordChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * RECORD_SIZE);
+            capacity = slots;
+        } catch (IOException e) {
+            throw new RuntimeException("Error mapping inventory store: " + e.getMessage());
+        }
+    }
+
+    private static int position(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+}
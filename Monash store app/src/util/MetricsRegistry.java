@@ -0,0 +1,129 @@
+package util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Utility class. Holds the latency of each operation of the system and counters of notable events, and
+ * writes them in the Prometheus text format.
+ * Recorders and counters are made the first time they are asked for and kept for the life of the
+ * process; callers should keep the one they are given rather than look it up for every run. Latencies are
+ * written as one summary with a label for each operation, and each counter as its own metric.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+    private static final String PREFIX = "monash_";
+    private static final Pattern NOT_ALLOWED_IN_NAMES = Pattern.compile("[^a-zA-Z0-9_]");
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private final ConcurrentSkipListMap<String, LatencyRecorder> latencies = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Counter> counters = new ConcurrentSkipListMap<>();
+
+    /**
+     * A count of events, which any number of threads can increment at once.
+     */
+    private static class Counter {
+        private final String help;
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String help) {
+            this.help = help;
+        }
+    }
+
+    /**
+     * Returns the registry shared by the whole system.
+     *
+     * @return the default MetricsRegistry
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the latency recorder of an operation, making it if there is none.
+     *
+     * @param operation the name of the operation, such as "login" or "file.read"
+     * @return the LatencyRecorder
+     */
+    public LatencyRecorder latency(String operation) {
+        return latencies.computeIfAbsent(operation, LatencyRecorder::new);
+    }
+
+    /**
+     * Returns a counter, making it if there is none.
+     *
+     * @param name the name of the counter, such as "login.failures"
+     * @param help what the counter counts, written with it
+     * @return the counter
+     */
+    public LongAdder counter(String name, String help) {
+        return counters.computeIfAbsent(name, key -> new Counter(help)).count;
+    }
+
+    /**
+     * Returns the latency recorders of every operation, by name.
+     *
+     * @return the latency recorders
+     */
+    public Map<String, LatencyRecorder> getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Writes every latency and counter in the Prometheus text format.
+     *
+     * @return the metrics
+     */
+    public String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        String summary = PREFIX + "operation_duration_seconds";
+        text.append("# HELP ").append(summary).append(" How long each operation takes.\n");
+        text.append("# TYPE ").append(summary).append(" summary\n");
+        for (LatencyRecorder recorder : latencies.values()) {
+            String label = "operation=\"" + recorder.getName() + "\"";
+            for (double quantile : QUANTILES) {
+                text.append(summary).append('{').append(label).append(",quantile=\"").append(quantile)
+                        .append("\"} ").append(recorder.getPercentile(quantile * 100) / 1e9).append('\n');
+            }
+            text.append(summary).append("_sum{").append(label).append("} ")
+                    .append(recorder.getTotalNanos() / 1e9).append('\n');
+            text.append(summary).append("_count{").append(label).append("} ")
+                    .append(recorder.getCount()).append('\n');
+        }
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            String name = PREFIX + NOT_ALLOWED_IN_NAMES.matcher(entry.getKey()).replaceAll("_") + "_total";
+            text.append("# HELP ").append(name).append(' ').append(entry.getValue().help).append('\n');
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(entry.getValue().count.sum()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes every latency and counter to a file in the Prometheus text format. The file is replaced once
+     * the new one is complete, so a collector reading it never sees half of it.
+     *
+     * @param fileName the name of the file
+     */
+    public void writePrometheus(String fileName) {
+        Path target = Paths.get(fileName);
+        Path temporary = Paths.get(fileName + ".tmp");
+        try {
+            Files.write(temporary, toPrometheus().getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing metrics: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package util;
+
+/**
+ * Utility class. Provides methods for handling amounts of money held as whole cents in a long.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class Money {
+
+    /**
+     * Converts an amount in dollars to cents, rounding to the nearest cent.
+     *
+     * @param amount the amount in dollars
+     * @return the amount in cents
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Converts an amount in cents to dollars.
+     *
+     * @param cents the amount in cents
+     * @return the amount in dollars
+     */
+    public static double toDollars(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Appends an amount in cents as dollars with two decimal places, such as 12.05, without creating any
+     * intermediate strings.
+     *
+     * @param builder the builder to append to
+     * @param cents   the amount in cents
+     * @return the builder
+     */
+    public static StringBuilder appendCents(StringBuilder builder, long cents) {
+        if (cents < 0) {
+            builder.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        builder.append(cents / 100).append('.');
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction);
+    }
+}
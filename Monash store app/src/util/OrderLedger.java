@@ -0,0 +1,442 @@
+package util;
+
+import entities.CartItem;
+import entities.OrderRecord;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Append-only ledger of placed orders, kept as a sequence of segment files in one directory.
+ * Each segment is named after the number of its first order and holds one order per line, in order
+ * number order:
+ * <pre>
+ * &lt;number&gt;,&lt;timestamp&gt;,&lt;email&gt;,&lt;total&gt;,&lt;n&gt;,&lt;key&gt;,&lt;quantity&gt;,&lt;price&gt;,...   for each of the n products
+ * </pre> Orders are appended to the last segment through a GroupCommitWriter; once a segment
+ * reaches its size limit it is sealed and a new one is started. Compaction merges runs of sealed segments
+ * smaller than the limit, such as those sealed before the limit was raised, into full ones; orders are never
+ * replaced or dropped, so merging is the only compaction the ledger needs.
+ * <p>
+ * An inventory store which keeps orders records each order's ledger line with its stock changes, so an
+ * order is committed by the store's fsync alone and the ledger is written behind it. The ledger is flushed
+ * before the store is checkpointed, and on startup it is brought up to date from the orders the store
+ * recorded since its last checkpoint.
+ * <p>
+ * Order numbers come from an atomic counter which continues from the last order in the ledger. An order
+ * is found by picking the one segment whose number range can hold it and reading only that segment.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class OrderLedger {
+    public static final long DEFAULT_SEGMENT_SIZE = 8L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".ledger";
+    private final Path directory;
+    private final long segmentSize;
+    private final AtomicLong lastOrderNumber = new AtomicLong();
+    // segment files by the number of their first order
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private FileChannel channel;
+    private GroupCommitWriter writer;
+    private long activeSize;
+
+    /**
+     * Constructor which opens the ledger in a directory, creating it if needed.
+     *
+     * @param directoryName the name of the ledger directory
+     */
+    public OrderLedger(String directoryName) {
+        this(directoryName, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructor which opens the ledger in a directory, creating it if needed. Sealed segments are
+     * compacted and appending continues in the last segment.
+     *
+     * @param directoryName the name of the ledger directory
+     * @param segmentSize   the size in bytes at which a segment is sealed
+     */
+    public OrderLedger(String directoryName, long segmentSize) {
+        this.directory = Paths.get(directoryName);
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                    SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    segments.put(firstOrderNumber(file), file);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening order ledger: " + e.getMessage());
+        }
+        if (!segments.isEmpty()) {
+            Path last = segments.lastEntry().getValue();
+            truncateTornLine(last);
+            lastOrderNumber.set(Math.max(segments.lastKey() - 1, lastOrderNumberIn(last)));
+            compactSealed();
+            openSegment(last);
+        }
+    }
+
+    /**
+     * Returns the next order number. Numbers increase by one and are never handed out twice.
+     *
+     * @return the order number
+     */
+    public long nextOrderNumber() {
+        return lastOrderNumber.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of the latest order handed out.
+     *
+     * @return the last order number, or 0 if there are no orders
+     */
+    public long getLastOrderNumber() {
+        return lastOrderNumber.get();
+    }
+
+    /**
+     * Returns the number of segment files in the ledger.
+     *
+     * @return the number of segments
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Formats the ledger line of an order, timestamped now.
+     *
+     * @param orderNumber the number of the order
+     * @param email       the email of the customer who placed the order
+     * @param totalCents  the total price of the order in cents
+     * @param items       the ordered items
+     * @return the ledger line, without a line separator
+     */
+    public static String formatOrder(long orderNumber, String email, long totalCents, List<CartItem> items) {
+        StringBuilder line = new StringBuilder(64 + 32 * items.size());
+        line.append(orderNumber).append(',').append(System.currentTimeMillis()).append(',').append(email)
+                .append(',');
+        Money.appendCents(line, totalCents).append(',').append(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            line.append(',').append(item.getProduct().getKey()).append(',').append(item.getQuantity()).append(',');
+            Money.appendCents(line, item.getUnitPriceCents());
+        }
+        return line.toString();
+    }
+
+    /**
+     * Appends an order to the ledger. Orders must be appended in order number order.
+     *
+     * @param orderNumber the number of the order
+     * @param record      the ledger line of the order, made by {@link #formatOrder}
+     * @return a future which completes once the order is durable
+     */
+    public synchronized CompletableFuture<Void> append(long orderNumber, String record) {
+        int length = record.getBytes(StandardCharsets.UTF_8).length + System.lineSeparator().length();
+        if (writer == null || activeSize > 0 && activeSize + length > segmentSize) {
+            rotate(orderNumber);
+        }
+        activeSize += length;
+        return writer.append(record);
+    }
+
+    /**
+     * Parses a line of a ledger segment.
+     *
+     * @param line the ledger line
+     * @return the OrderRecord, or null if the line is not a whole order
+     */
+    public static OrderRecord parseOrder(String line) {
+        String[] fields = line.split(",");
+        try {
+            int count = Integer.parseInt(fields[4]);
+            if (fields.length != 5 + 3 * count) {
+                return null;
+            }
+            List<OrderRecord.Line> lines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int field = 5 + 3 * i;
+                lines.add(new OrderRecord.Line(fields[field], Integer.parseInt(fields[field + 1]),
+                        Double.parseDouble(fields[field + 2])));
+            }
+            return new OrderRecord(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2],
+                    Double.parseDouble(fields[3]), lines);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds an order by its number.
+     *
+     * @param orderNumber the number of the order
+     * @return the OrderRecord, or null if there is no such order
+     */
+    public OrderRecord findOrder(long orderNumber) {
+        Path segment;
+        synchronized (this) {
+            if (writer != null) {
+                writer.flush();
+            }
+            Map.Entry<Long, Path> entry = segments.floorEntry(orderNumber);
+            if (entry == null) {
+                return null;
+            }
+            segment = entry.getValue();
+        }
+        OrderRecord[] found = new OrderRecord[1];
+        readSegment(segment, order -> {
+            if (order.getOrderNumber() == orderNumber) {
+                found[0] = order;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Finds every order placed by a customer.
+     *
+     * @param email the email of the customer
+     * @return the customer's orders, oldest first
+     */
+    public List<OrderRecord> findOrders(String email) {
+        List<OrderRecord> orders = new ArrayList<>();
+        replay(order -> {
+            if (order.getEmail().equals(email)) {
+                orders.add(order);
+            }
+        });
+        return orders;
+    }
+
+    /**
+     * Passes every order in the ledger to a consumer, oldest first.
+     *
+     * @param consumer the consumer of the orders
+     * @return the number of orders replayed
+     */
+    public long replay(Consumer<OrderRecord> consumer) {
+        List<Path> files;
+        synchronized (this) {
+            if (writer != null) {
+                writer.flush();
+            }
+            files = new ArrayList<>(segments.values());
+        }
+        long[] state = {0, 0};
+        for (Path file : files) {
+            readSegment(file, order -> {
+                // an order can appear twice if compaction was interrupted
+                if (order.getOrderNumber() > state[1]) {
+                    state[1] = order.getOrderNumber();
+                    state[0]++;
+                    consumer.accept(order);
+                }
+            });
+        }
+        return state[0];
+    }
+
+    /**
+     * Brings the ledger up to date with orders recorded by an inventory store but not yet appended, such as
+     * when the system stopped before the ledger was written. Orders already in the ledger are skipped, and
+     * order numbers continue from the last order recovered.
+     *
+     * @param records the ledger lines of the orders recorded by the store, oldest first
+     */
+    public synchronized void recover(List<String> records) {
+        for (String record : records) {
+            OrderRecord order = parseOrder(record);
+            if (order != null && order.getOrderNumber() > lastOrderNumber.get()) {
+                append(order.getOrderNumber(), record).join();
+                lastOrderNumber.set(order.getOrderNumber());
+            }
+        }
+    }
+
+    /**
+     * Waits until every order appended so far is durable.
+     */
+    public synchronized void flush() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Merges runs of sealed segments which together fit within the segment size into single segments.
+     * The merged file replaces the first segment of the run before the rest of the run is deleted.
+     */
+    public synchronized void compact() {
+        compactSealed();
+    }
+
+    /**
+     * Writes everything appended so far and closes the ledger.
+     */
+    public synchronized void close() {
+        closeSegment();
+    }
+
+    // private, so the constructor can compact without calling a method a subclass could override
+    private void compactSealed() {
+        List<Path> sealed = new ArrayList<>(segments.values());
+        if (!sealed.isEmpty()) {
+            // the last segment is active, or will be reopened for appending
+            sealed.remove(sealed.size() - 1);
+        }
+        List<Path> run = new ArrayList<>();
+        long runSize = 0;
+        for (Path file : sealed) {
+            long size = size(file);
+            if (!run.isEmpty() && runSize + size > segmentSize) {
+                merge(run);
+                run.clear();
+                runSize = 0;
+            }
+            run.add(file);
+            runSize += size;
+        }
+        merge(run);
+    }
+
+    private void merge(List<Path> run) {
+        if (run.size() < 2) {
+            return;
+        }
+        Path first = run.get(0);
+        Path temp = directory.resolve(first.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Path file : run) {
+                try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        out.write(line);
+                        out.newLine();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error compacting order ledger: " + e.getMessage());
+        }
+        try {
+            try (FileChannel merged = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                merged.force(true);
+            }
+            Files.move(temp, first, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (Path file : run.subList(1, run.size())) {
+                Files.delete(file);
+                segments.remove(firstOrderNumber(file));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error compacting order ledger: " + e.getMessage());
+        }
+    }
+
+    private void rotate(long firstOrderNumber) {
+        closeSegment();
+        Path file = directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, firstOrderNumber, SEGMENT_SUFFIX));
+        segments.put(firstOrderNumber, file);
+        openSegment(file);
+    }
+
+    private void openSegment(Path file) {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            activeSize = channel.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening order ledger: " + e.getMessage());
+        }
+        writer = new GroupCommitWriter(channel, GroupCommitWriter.DEFAULT_WINDOW, "order-ledger-writer");
+    }
+
+    private void closeSegment() {
+        if (writer == null) {
+            return;
+        }
+        writer.close();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        writer = null;
+        channel = null;
+    }
+
+    private static void readSegment(Path file, Consumer<OrderRecord> consumer) {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                OrderRecord order = parseOrder(line);
+                if (order != null) {
+                    consumer.accept(order);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading order ledger: " + e.getMessage());
+        }
+    }
+
+    private static long lastOrderNumberIn(Path file) {
+        long[] last = {0};
+        readSegment(file, order -> last[0] = order.getOrderNumber());
+        return last[0];
+    }
+
+    // drops a partly written last line, left by a crash during an append
+    private static void truncateTornLine(Path file) {
+        try (RandomAccessFile segment = new RandomAccessFile(file.toFile(), "rw")) {
+            long length = segment.length();
+            long end = length;
+            while (end > 0) {
+                segment.seek(end - 1);
+                if (segment.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < length) {
+                segment.setLength(end);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening order ledger: " + e.getMessage());
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading order ledger: " + e.getMessage());
+        }
+    }
+
+    private static long firstOrderNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
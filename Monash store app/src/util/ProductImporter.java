@@ -0,0 +1,129 @@
+package util;
+
+import entities.Inventory;
+import entities.Product;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Utility class. Imports products in bulk from a comma-separated file in the format of the inventory file.
+ * Records are parsed and validated in parallel, one chunk of the file per task, by the product rules of
+ * StringValidation, as a product added through the menu is. Records which fail are rejected with their
+ * line number and the reason, as are products already in the inventory or earlier in the file. The accepted
+ * products are left for the caller to add to the inventory together.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class ProductImporter {
+    private final FileIO fileIO = new FileIO();
+    private final ChunkedLoader loader;
+
+    /**
+     * Outcome of importing a file.
+     */
+    public static class Result {
+        private final List<Product> accepted;
+        private final List<String> rejections;
+        private final int rows;
+
+        private Result(List<Product> accepted, List<String> rejections, int rows) {
+            this.accepted = accepted;
+            this.rejections = rejections;
+            this.rows = rows;
+        }
+
+        /**
+         * Returns the products which passed validation and are not duplicates.
+         *
+         * @return the accepted products, in file order
+         */
+        public List<Product> getAccepted() {
+            return accepted;
+        }
+
+        /**
+         * Returns why each rejected row was rejected.
+         *
+         * @return a message for each rejected row
+         */
+        public List<String> getRejections() {
+            return rejections;
+        }
+
+        /**
+         * Returns the number of rows read, not counting blank lines.
+         *
+         * @return the number of rows
+         */
+        public int getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * Default constructor. Files are split into chunks of the default size.
+     */
+    public ProductImporter() {
+        this(new ChunkedLoader());
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param loader the loader which splits files into chunks and parses them in parallel
+     */
+    public ProductImporter(ChunkedLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Reads, validates and deduplicates the products in a file. The inventory is not changed.
+     *
+     * @param fileName  the name of the file to import
+     * @param inventory the inventory the products are to be added to
+     * @return the accepted products and the rejected rows
+     */
+    public Result importFile(String fileName, Inventory inventory) {
+        List<String> rejections = new ArrayList<>();
+        List<Long> lines = new ArrayList<>();
+        ArrayList<Product> valid = loader.readRecords(fileName, this::readValidProduct, rejections::add, lines);
+        int rows = valid.size() + rejections.size();
+        List<Product> accepted = new ArrayList<>(valid.size());
+        HashSet<String> keys = new HashSet<>();
+        for (int i = 0; i < valid.size(); i++) {
+            Product product = valid.get(i);
+            String key = product.getKey();
+            if (inventory.findProductByKey(key) != null) {
+                rejections.add(RecordReader.describe(fileName, lines.get(i),
+                        describe(product) + " is already in the inventory"));
+            } else if (!keys.add(key)) {
+                rejections.add(RecordReader.describe(fileName, lines.get(i),
+                        describe(product) + " appears more than once"));
+            } else {
+                accepted.add(product);
+            }
+        }
+        return new Result(accepted, rejections, rows);
+    }
+
+    // runs on the loader's threads, so only uses the reader and stateless parsing
+    private Product readValidProduct(RecordReader reader) {
+        Product product = fileIO.readProduct(reader);
+        if (product == null) {
+            return null;
+        }
+        String reason = StringValidation.validateProduct(product);
+        if (reason != null) {
+            reader.reportMalformed(reason);
+            return null;
+        }
+        return product;
+    }
+
+    private static String describe(Product product) {
+        return "\"" + product.getProductName() + "\" by \"" + product.getBrand() + "\"";
+    }
+}
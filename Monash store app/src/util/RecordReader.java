@@ -0,0 +1,380 @@
+package util;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Utility class. Reads the comma-separated records of a file one at a time.
+ * Lines are split into fields directly in the read buffer, which is reused for the whole file, so no
+ * string is created for a line. Fields are trimmed, numbers are parsed from the buffer without creating
+ * strings, and only fields read as text become strings. Blank lines are skipped. A line with the wrong
+ * number of fields or a field which is not a number is reported with its line number, once, and the
+ * caller skips it. A reader can also read one chunk of a file, such as a memory-mapped region, in which
+ * case line numbers count from the start of the chunk.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class RecordReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private final String fileName;
+    private final InputStream in;
+    private final ByteBuffer chunk;
+    private final ObjIntConsumer<String> reporter;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean endOfFile;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private int fieldCount;
+    private int lineNumber;
+    private boolean malformed;
+    private int malformedCount;
+
+    /**
+     * Parameterized constructor. Malformed lines are reported on the standard error stream.
+     *
+     * @param fileName the name of the file to read
+     * @throws IOException if the file cannot be opened
+     */
+    public RecordReader(String fileName) throws IOException {
+        this(fileName, System.err::println);
+    }
+
+    /**
+     * Parameterized constructor.
+     *
+     * @param fileName the name of the file to read
+     * @param reporter receives a message for each malformed line, starting with the file name and line number
+     * @throws IOException if the file cannot be opened
+     */
+    public RecordReader(String fileName, Consumer<String> reporter) throws IOException {
+        this.fileName = fileName;
+        this.in = new FileInputStream(fileName);
+        this.chunk = null;
+        this.reporter = (reason, line) -> reporter.accept(describe(fileName, line, reason));
+    }
+
+    /**
+     * Constructor which reads the records in one chunk of a file. The chunk should start at the start of a
+     * line and end at the end of one.
+     *
+     * @param fileName the name of the file the chunk is from
+     * @param chunk    the bytes of the chunk, read from its position to its limit
+     * @param reporter receives the reason each malformed line is skipped and its line number within the chunk
+     */
+    public RecordReader(String fileName, ByteBuffer chunk, ObjIntConsumer<String> reporter) {
+        this.fileName = fileName;
+        this.in = null;
+        this.chunk = chunk;
+        this.reporter = reporter;
+    }
+
+    /**
+     * Moves to the next record which is not blank.
+     *
+     * @return true if there is a record, false at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int end = findLineEnd();
+            if (end < 0) {
+                fieldCount = 0;
+                return false;
+            }
+            int lineStart = position;
+            // the bytes of this line stay in place until the next call reads more
+            position = Math.min(end + 1, limit);
+            lineNumber++;
+            malformed = false;
+            split(lineStart, end > lineStart && buffer[end - 1] == '\r' ? end - 1 : end);
+            if (fieldCount > 1 || fieldLength(0) > 0) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the line number of the current record, counting from one.
+     *
+     * @return the line number
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the number of fields in the current record.
+     *
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Checks that the current record has a number of fields, reporting it as malformed if not.
+     *
+     * @param expected the number of fields expected
+     * @return true if the record has that many fields
+     */
+    public boolean expectFields(int expected) {
+        if (fieldCount != expected) {
+            reportMalformed("expected " + expected + " fields but found " + fieldCount);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a field of the current record as text, without surrounding spaces.
+     *
+     * @param field the zero-based field number
+     * @return the field text
+     */
+    public String getString(int field) {
+        return new String(buffer, fieldStarts[field], fieldLength(field), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a field of the current record as a whole number. Malformed numbers are reported and read as zero.
+     *
+     * @param field the zero-based field number
+     * @return the number
+     */
+    public int getInt(int field) {
+        int start = fieldStarts[field];
+        int end = start + fieldLength(field);
+        boolean negative = start < end && buffer[start] == '-';
+        int i = negative || start < end && buffer[start] == '+' ? start + 1 : start;
+        if (i == end) {
+            return malformedField(field, "a whole number");
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return malformedField(field, "a whole number");
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                return malformedField(field, "a whole number");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            return malformedField(field, "a whole number");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a field of the current record as a decimal number. Malformed numbers are reported and read as zero.
+     *
+     * @param field the zero-based field number
+     * @return the number
+     */
+    public double getDouble(int field) {
+        int start = fieldStarts[field];
+        int end = start + fieldLength(field);
+        boolean negative = start < end && buffer[start] == '-';
+        int i = negative || start < end && buffer[start] == '+' ? start + 1 : start;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '.' && scale < 0) {
+                scale = 0;
+            } else if (b >= '0' && b <= '9' && digits < 15) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                // exponents and long mantissas are rare enough to parse the slow way
+                return parseDoubleSlowly(field);
+            }
+        }
+        if (digits == 0) {
+            return malformedField(field, "a number");
+        }
+        // exact when the mantissa and the power of ten are both exactly representable
+        double value = mantissa / POWERS_OF_TEN[Math.max(scale, 0)];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a field of the current record as true or false, ignoring case. Any other text reads as false.
+     *
+     * @param field the zero-based field number
+     * @return the value of the field
+     */
+    public boolean getBoolean(int field) {
+        int start = fieldStarts[field];
+        if (fieldLength(field) != 4) {
+            return false;
+        }
+        return (buffer[start] | 0x20) == 't' && (buffer[start + 1] | 0x20) == 'r'
+                && (buffer[start + 2] | 0x20) == 'u' && (buffer[start + 3] | 0x20) == 'e';
+    }
+
+    /**
+     * Reports the current record as malformed, unless it already has been.
+     *
+     * @param reason why the record is malformed
+     */
+    public void reportMalformed(String reason) {
+        if (!malformed) {
+            malformed = true;
+            malformedCount++;
+            reporter.accept(reason, lineNumber);
+        }
+    }
+
+    /**
+     * Returns whether the current record has been reported as malformed, and so should be skipped.
+     *
+     * @return true if the record is malformed
+     */
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    /**
+     * Returns the number of malformed records reported so far.
+     *
+     * @return the number of malformed records
+     */
+    public int getMalformedCount() {
+        return malformedCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Describes a malformed line for reporting.
+     *
+     * @param fileName   the name of the file
+     * @param lineNumber the line number, counting from one
+     * @param reason     why the line is malformed
+     * @return the description
+     */
+    static String describe(String fileName, long lineNumber, String reason) {
+        return fileName + ":" + lineNumber + ": " + reason + ", skipping line";
+    }
+
+    private int malformedField(int field, String expected) {
+        reportMalformed("field " + (field + 1) + " \"" + getString(field) + "\" is not " + expected);
+        return 0;
+    }
+
+    private double parseDoubleSlowly(int field) {
+        try {
+            return Double.parseDouble(getString(field));
+        } catch (NumberFormatException e) {
+            return malformedField(field, "a number");
+        }
+    }
+
+    private int fieldLength(int field) {
+        return fieldEnds[field] - fieldStarts[field];
+    }
+
+    // position of the newline ending the line at position, or the end of the last line, reading as needed
+    private int findLineEnd() throws IOException {
+        int searched = position;
+        while (true) {
+            for (int i = searched; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    return i;
+                }
+            }
+            searched = limit;
+            if (endOfFile) {
+                return position < limit ? limit : -1;
+            }
+            searched -= fill();
+        }
+    }
+
+    // moves the unread bytes to the start of the buffer and reads more, returning how far they moved
+    private int fill() throws IOException {
+        int moved = position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read;
+        if (chunk != null) {
+            read = chunk.hasRemaining() ? Math.min(chunk.remaining(), buffer.length - limit) : -1;
+            if (read > 0) {
+                chunk.get(buffer, limit, read);
+            }
+        } else {
+            read = in.read(buffer, limit, buffer.length - limit);
+        }
+        if (read < 0) {
+            endOfFile = true;
+        } else {
+            limit += read;
+        }
+        return moved;
+    }
+
+    private void split(int start, int end) {
+        fieldCount = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buffer[i] == ',') {
+                if (fieldCount == fieldStarts.length) {
+                    fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+                    fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+                }
+                fieldStarts[fieldCount] = fieldStart;
+                fieldEnds[fieldCount] = i;
+                fieldCount++;
+                fieldStart = i + 1;
+            }
+        }
+        trimFields();
+    }
+
+    private void trimFields() {
+        for (int field = 0; field < fieldCount; field++) {
+            int start = fieldStarts[field];
+            int end = fieldEnds[field];
+            while (start < end && (buffer[start] & 0xff) <= ' ') {
+                start++;
+            }
+            while (end > start && (buffer[end - 1] & 0xff) <= ' ') {
+                end--;
+            }
+            fieldStarts[field] = start;
+            fieldEnds[field] = end;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package util;
+
+import entities.Product;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary snapshot of the state loaded at startup, written on a clean shutdown.
+ * The snapshot holds the products and the customer index already parsed, so the next start reads them
+ * back without parsing the text files. Its header records the length and modification time of each file
+ * it was taken from; if any of them has changed since, the snapshot is stale and is not used. Opening a
+ * snapshot only reads the header, and each section is read when it is first needed.
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class StartupSnapshot {
+    private static final int MAGIC = 0x4D4D5331;
+    private final String fileName;
+    private final long productsOffset;
+    private final long customersOffset;
+
+    private StartupSnapshot(String fileName, long productsOffset, long customersOffset) {
+        this.fileName = fileName;
+        this.productsOffset = productsOffset;
+        this.customersOffset = customersOffset;
+    }
+
+    /**
+     * Opens a snapshot if it is still current.
+     *
+     * @param fileName     the name of the snapshot file
+     * @param watchedFiles the files the snapshot was taken from
+     * @return the snapshot, or null if there is none or any of the files has changed since it was written
+     */
+    public static StartupSnapshot open(String fileName, String... watchedFiles) {
+        if (!new File(fileName).exists()) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            if (file.readInt() != MAGIC || file.readInt() != watchedFiles.length) {
+                return null;
+            }
+            for (String watched : watchedFiles) {
+                File current = new File(watched);
+                if (!file.readUTF().equals(watched) || file.readLong() != current.length()
+                        || file.readLong() != current.lastModified()) {
+                    return null;
+                }
+            }
+            long productsLength = file.readLong();
+            long productsOffset = file.getFilePointer();
+            return new StartupSnapshot(fileName, productsOffset, productsOffset + productsLength);
+        } catch (IOException e) {
+            // a snapshot torn by a crash is only a missed shortcut
+            return null;
+        }
+    }
+
+    /**
+     * Reads the products in the snapshot.
+     *
+     * @return the products, in the order they were written
+     */
+    public ArrayList<Product> readProducts() {
+        try (DataInputStream in = openAt(productsOffset)) {
+            int count = in.readInt();
+            ArrayList<Product> products = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                String brand = in.readUTF();
+                String category = in.readUTF();
+                String subCategory = in.readUTF();
+                double price = in.readDouble();
+                double memberPrice = in.readDouble();
+                int quantity = in.readInt();
+                String description = in.readUTF();
+                products.add(new Product(name, brand, category, subCategory, price, memberPrice, quantity,
+                        description));
+            }
+            return products;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading startup snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens a customer store over the customers file with the index in the snapshot.
+     *
+     * @param customerFileName the name of the customers file
+     * @return the CustomerStore
+     */
+    public CustomerStore readCustomerStore(String customerFileName) {
+        try (DataInputStream in = openAt(customersOffset)) {
+            return new CustomerStore(customerFileName, in);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading startup snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a snapshot, replacing the previous one once it is complete. The watched files should not
+     * change until the snapshot has been written.
+     *
+     * @param fileName      the name of the snapshot file
+     * @param products      the products to save
+     * @param customerStore the customer store whose index to save
+     * @param watchedFiles  the files the snapshot is taken from
+     */
+    public static void write(String fileName, List<Product> products, CustomerStore customerStore,
+                             String... watchedFiles) {
+        Path target = Paths.get(fileName);
+        Path temporary = Paths.get(fileName + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeInt(MAGIC);
+            out.writeInt(watchedFiles.length);
+            for (String watched : watchedFiles) {
+                File current = new File(watched);
+                out.writeUTF(watched);
+                out.writeLong(current.length());
+                out.writeLong(current.lastModified());
+            }
+            out.flush();
+            long lengthOffset = file.getChannel().position();
+            out.writeLong(0);
+            out.writeInt(products.size());
+            for (Product product : products) {
+                out.writeUTF(product.getProductName());
+                out.writeUTF(product.getBrand());
+                out.writeUTF(product.getCategory());
+                out.writeUTF(product.getSubCategory());
+                out.writeDouble(product.getPrice());
+                out.writeDouble(product.getMemberPrice());
+                out.writeInt(product.getQuantity());
+                out.writeUTF(product.getDescription());
+            }
+            out.flush();
+            long productsLength = file.getChannel().position() - lengthOffset - Long.BYTES;
+            customerStore.writeIndex(out);
+            out.flush();
+            // fill in the length of the products section, now that it is known
+            ByteBuffer length = ByteBuffer.allocate(Long.BYTES).putLong(0, productsLength);
+            file.getChannel().write(length, lengthOffset);
+            file.getChannel().force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing startup snapshot: " + e.getMessage());
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing startup snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes a snapshot once it has been read, so that a start after a crash never relies on one.
+     *
+     * @param fileName the name of the snapshot file
+     */
+    public static void delete(String fileName) {
+        try {
+            Files.deleteIfExists(Paths.get(fileName));
+        } catch (IOException e) {
+            throw new RuntimeException("Error deleting startup snapshot: " + e.getMessage());
+        }
+    }
+
+    private DataInputStream openAt(long offset) throws IOException {
+        FileInputStream file = new FileInputStream(fileName);
+        FileChannel channel = file.getChannel();
+        channel.position(offset);
+        return new DataInputStream(new BufferedInputStream(file));
+    }
+}
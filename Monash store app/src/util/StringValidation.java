@@ -1,40 +1,295 @@
 package util;
 
+import entities.Customer;
+import entities.Product;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
 /**
- * Utility class. Provides methods for validating strings.
+ * Utility class. Provides methods for validating strings, and the rules for each field of a product and
+ * a customer.
+ * Patterns are compiled once, and numbers are checked and parsed by scanning their characters, so that a
+ * bad value costs no more than a good one: nothing is thrown and nothing is created. The same rules are
+ * used for products typed in by an admin, products imported from a file and new customers, so a record
+ * accepted by one is accepted by all of them.
  *
  * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
  * @version 5/16/2024
  */
 public class StringValidation {
+    private static final Pattern LETTERS_NUMBERS_AND_SPACES = Pattern.compile("[a-zA-Z0-9\\s]+");
+    private static final Pattern LETTERS = Pattern.compile("[a-zA-Z]+");
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z][a-zA-Z '-]*");
+    private static final Pattern EMAIL = Pattern.compile("[^\\s,@]+@[^\\s,@]+\\.[^\\s,@]+");
+    private static final Pattern NO_SPACES_OR_COMMAS = Pattern.compile("[^\\s,]+");
+    private static final Pattern NOT_BLANK_NO_COMMAS = Pattern.compile("[^,]*[^\\s,][^,]*");
+    private static final Pattern DATE = Pattern.compile("\\d{2}/\\d{2}/\\d{4}");
+    private static final Pattern PHONE_NUMBER = Pattern.compile("\\+?\\d{8,15}");
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    public static final FieldRule PRODUCT_NAME = FieldRule.text("Product name", LETTERS_NUMBERS_AND_SPACES,
+            "must contain only letters, numbers, and spaces");
+    public static final FieldRule BRAND = FieldRule.text("Brand name", LETTERS_NUMBERS_AND_SPACES,
+            "must contain only letters, numbers, and spaces");
+    public static final FieldRule CATEGORY = FieldRule.text("Category", LETTERS, "must contain only letters");
+    public static final FieldRule SUB_CATEGORY = FieldRule.text("Subcategory", LETTERS,
+            "must contain only letters");
+    public static final FieldRule PRICE = FieldRule.positiveDecimal("Price");
+    public static final FieldRule MEMBER_PRICE = FieldRule.positiveDecimal("Member price");
+    public static final FieldRule QUANTITY = FieldRule.wholeNumberAtLeast("Quantity", 1);
+    // an existing product may be edited down to no stock, though a new one must have some
+    public static final FieldRule STOCK_ON_HAND = FieldRule.wholeNumberAtLeast("Quantity", 0);
+    public static final FieldRule DESCRIPTION = FieldRule.text("Description", LETTERS_NUMBERS_AND_SPACES,
+            "must contain only letters, numbers, and spaces");
+    // the fields of a product, in the order of the inventory file
+    public static final List<FieldRule> PRODUCT_RULES = List.of(PRODUCT_NAME, BRAND, CATEGORY, SUB_CATEGORY,
+            PRICE, MEMBER_PRICE, QUANTITY, DESCRIPTION);
+
+    public static final FieldRule EMAIL_ADDRESS = FieldRule.text("Email", EMAIL, "must be an email address");
+    public static final FieldRule PASSWORD = FieldRule.text("Password", NO_SPACES_OR_COMMAS,
+            "must not be blank or contain spaces or commas");
+    public static final FieldRule FIRST_NAME = FieldRule.text("First name", NAME,
+            "must contain only letters, spaces, hyphens, and apostrophes");
+    public static final FieldRule LAST_NAME = FieldRule.text("Last name", NAME,
+            "must contain only letters, spaces, hyphens, and apostrophes");
+    public static final FieldRule DATE_OF_BIRTH = FieldRule.text("Date of birth", DATE, "must be DD/MM/YYYY");
+    public static final FieldRule ADDRESS = FieldRule.text("Address", NOT_BLANK_NO_COMMAS,
+            "must not be blank or contain commas");
+    public static final FieldRule MOBILE_NUMBER = FieldRule.text("Mobile number", PHONE_NUMBER,
+            "must contain 8 to 15 digits");
+    public static final FieldRule FUNDS = FieldRule.nonNegativeDecimal("Funds");
+    public static final FieldRule MEMBERSHIP = FieldRule.trueOrFalse("Membership");
+    // the fields of a customer, in the order of the customers file
+    public static final List<FieldRule> CUSTOMER_RULES = List.of(EMAIL_ADDRESS, PASSWORD, FIRST_NAME, LAST_NAME,
+            DATE_OF_BIRTH, ADDRESS, MOBILE_NUMBER, FUNDS, MEMBERSHIP);
+
+    /**
+     * Checks every field of a product against the product rules.
+     *
+     * @param product the product to check
+     * @return why the first invalid field is not valid, or null if the product is valid
+     */
+    public static String validateProduct(Product product) {
+        return firstError(PRODUCT_NAME.check(product.getProductName()), BRAND.check(product.getBrand()),
+                CATEGORY.check(product.getCategory()), SUB_CATEGORY.check(product.getSubCategory()),
+                PRICE.check(product.getPrice()), MEMBER_PRICE.check(product.getMemberPrice()),
+                QUANTITY.check(product.getQuantity()), DESCRIPTION.check(product.getDescription()));
+    }
+
+    /**
+     * Checks every field of a customer against the customer rules.
+     *
+     * @param customer the customer to check
+     * @return why the first invalid field is not valid, or null if the customer is valid
+     */
+    public static String validateCustomer(Customer customer) {
+        return firstError(EMAIL_ADDRESS.check(customer.getEmail()), PASSWORD.check(customer.getPassword()),
+                FIRST_NAME.check(customer.getFirstName()), LAST_NAME.check(customer.getLastName()),
+                DATE_OF_BIRTH.check(customer.getDateOfBirth()), ADDRESS.check(customer.getAddress()),
+                MOBILE_NUMBER.check(customer.getMobileNumber()), FUNDS.check(customer.getFunds()));
+    }
 
     /**
-     * Checks if the given string can be parsed as an integer.
+     * Checks if the given string can be parsed as an integer, by the rules of Integer.parseInt: an optional
+     * sign followed by digits, within the range of an int.
      *
      * @param str the string to be checked
      * @return true if the string can be parsed as an integer, false otherwise
      */
-    public static boolean isInteger(String str) {
-        try {
-            Integer.parseInt(str);
-            return true;
-        } catch (NumberFormatException e) {
+    public static boolean isInteger(CharSequence str) {
+        if (str == null) {
+            return false;
+        }
+        int length = str.length();
+        int i = length > 0 && (str.charAt(0) == '-' || str.charAt(0) == '+') ? 1 : 0;
+        if (i == length) {
             return false;
         }
+        long limit = str.charAt(0) == '-' ? Integer.MAX_VALUE + 1L : Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < length; i++) {
+            int digit = str.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            value = value * 10 + digit;
+            if (value > limit) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Checks if the given string can be parsed as a double.
+     * Checks if the given string can be parsed as a double, by the rules of Double.parseDouble for decimal
+     * numbers: surrounding whitespace, an optional sign, digits with an optional decimal point, an optional
+     * exponent and an optional f or d suffix, or NaN or Infinity. Hexadecimal numbers are not accepted.
      *
      * @param str the string to be checked
      * @return true if the string can be parsed as a double, false otherwise
      */
-    public static boolean isDouble(String str) {
-        try {
-            Double.parseDouble(str);
+    public static boolean isDouble(CharSequence str) {
+        if (str == null) {
+            return false;
+        }
+        int start = 0;
+        int end = str.length();
+        while (start < end && str.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && str.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int i = start < end && (str.charAt(start) == '-' || str.charAt(start) == '+') ? start + 1 : start;
+        if (regionEquals(str, i, end, "NaN") || regionEquals(str, i, end, "Infinity")) {
             return true;
-        } catch (NumberFormatException e) {
+        }
+        int digits = 0;
+        while (i < end && isDigit(str.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < end && str.charAt(i) == '.') {
+            i++;
+            while (i < end && isDigit(str.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (str.charAt(i) == 'e' || str.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (str.charAt(i) == '-' || str.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < end && isDigit(str.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        if (i < end && "fFdD".indexOf(str.charAt(i)) >= 0) {
+            i++;
+        }
+        return i == end;
+    }
+
+    /**
+     * Checks if the given string is true or false, in any case.
+     *
+     * @param str the string to be checked
+     * @return true if the string is true or false, false otherwise
+     */
+    public static boolean isBoolean(CharSequence str) {
+        return str != null && (regionEqualsIgnoreCase(str, "true") || regionEqualsIgnoreCase(str, "false"));
+    }
+
+    /**
+     * Parses an integer without throwing.
+     *
+     * @param str      the string to parse
+     * @param fallback the value to return if the string is not an integer
+     * @return the integer, or the fallback
+     */
+    public static int parseInt(CharSequence str, int fallback) {
+        if (!isInteger(str)) {
+            return fallback;
+        }
+        boolean negative = str.charAt(0) == '-';
+        long value = 0;
+        for (int i = negative || str.charAt(0) == '+' ? 1 : 0; i < str.length(); i++) {
+            value = value * 10 + (str.charAt(i) - '0');
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Parses a double without throwing. Plain decimals of up to fifteen digits, such as prices, are parsed
+     * directly from the characters; other numbers are checked first and then parsed by Double.parseDouble.
+     *
+     * @param str      the string to parse
+     * @param fallback the value to return if the string is not a double
+     * @return the double, or the fallback
+     */
+    public static double parseDouble(CharSequence str, double fallback) {
+        if (!isDouble(str)) {
+            return fallback;
+        }
+        int start = 0;
+        int end = str.length();
+        while (str.charAt(start) <= ' ') {
+            start++;
+        }
+        while (str.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        boolean negative = str.charAt(start) == '-';
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = negative || str.charAt(start) == '+' ? start + 1 : start; i < end; i++) {
+            char c = str.charAt(i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if (isDigit(c) && digits < 15) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                // exponents, suffixes and long mantissas are rare enough to parse the slow way
+                return Double.parseDouble(str.toString());
+            }
+        }
+        // exact when the mantissa and the power of ten are both exactly representable
+        double value = mantissa / POWERS_OF_TEN[Math.max(scale, 0)];
+        return negative ? -value : value;
+    }
+
+    private static String firstError(String... errors) {
+        for (String error : errors) {
+            if (error != null) {
+                return error;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean regionEquals(CharSequence str, int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (str.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEqualsIgnoreCase(CharSequence str, String expected) {
+        if (str.length() != expected.length()) {
             return false;
         }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(str.charAt(i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
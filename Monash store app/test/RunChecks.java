@@ -0,0 +1,47 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs every check in the test folder, each in its own JVM as the checks exit on failure, and fails if any
+ * of them did. The output of each check is passed through. The benchmarks are left out, as they measure
+ * rather than check and take much longer.
+ * <p>
+ * Run with: java -cp out RunChecks
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class RunChecks {
+    private static final List<String> CHECKS = List.of(
+            "util.RecordReaderCheck",
+            "util.InventoryJournalCheck",
+            "entities.StockLevelRaceCheck",
+            "util.CheckoutAllocationCheck");
+
+    /**
+     * Runs the checks.
+     *
+     * @param args not used
+     * @throws IOException if a check cannot be started
+     * @throws InterruptedException if interrupted while waiting for a check
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classPath = System.getProperty("java.class.path");
+        List<String> failed = new ArrayList<>();
+        for (String check : CHECKS) {
+            System.out.println("== " + check);
+            int exitCode = new ProcessBuilder(java, "-cp", classPath, check).inheritIO().start().waitFor();
+            if (exitCode != 0) {
+                failed.add(check);
+            }
+        }
+        if (!failed.isEmpty()) {
+            System.out.println("FAILED: " + failed);
+            System.exit(1);
+        }
+        System.out.println("OK: all " + CHECKS.size() + " checks passed");
+    }
+}
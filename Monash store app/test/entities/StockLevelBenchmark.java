@@ -0,0 +1,108 @@
+package entities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures reserving, committing and releasing the stock of one hot product from many threads at once, as
+ * when a popular product is in many shoppers' carts. Each thread reserves one unit and then either commits
+ * it, as an order would, or releases it, as an emptied cart would, while an admin thread keeps setting the
+ * stock on hand. Once the threads stop, the stock must add up: nothing is left reserved, the stock on hand
+ * is what was last set less what was committed since, and it never went below zero.
+ * <p>
+ * Run with: java -cp out entities.StockLevelBenchmark [threads] [seconds]
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class StockLevelBenchmark {
+    private static final int RESTOCK_QUANTITY = 1_000_000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of shopper threads and the number of seconds to run for, both optional
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        StockLevel stock = new StockLevel(RESTOCK_QUANTITY);
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder reserved = new LongAdder();
+        LongAdder refused = new LongAdder();
+        LongAdder committed = new LongAdder();
+        LongAdder belowZero = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> shoppers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread shopper = new Thread(() -> {
+                await(start);
+                long count = 0;
+                while (running.get()) {
+                    if (!stock.tryReserve(1)) {
+                        refused.increment();
+                        continue;
+                    }
+                    reserved.increment();
+                    if ((++count & 1) == 0) {
+                        stock.commit(1);
+                        committed.increment();
+                    } else {
+                        stock.release(1);
+                    }
+                    if (stock.getOnHand() < 0) {
+                        belowZero.increment();
+                    }
+                }
+            }, "shopper-" + i);
+            shoppers.add(shopper);
+            shopper.start();
+        }
+        // the admin sets the stock on hand, sometimes below what the shoppers have reserved
+        AtomicInteger lastSet = new AtomicInteger(RESTOCK_QUANTITY);
+        Thread admin = new Thread(() -> {
+            await(start);
+            int round = 0;
+            while (running.get()) {
+                lastSet.set(stock.setOnHand(round++ % 2 == 0 ? RESTOCK_QUANTITY : 0));
+                Thread.onSpinWait();
+            }
+        }, "admin");
+        admin.start();
+
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(seconds * 1000);
+        running.set(false);
+        for (Thread shopper : shoppers) {
+            shopper.join();
+        }
+        admin.join();
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+
+        System.out.printf("%d shopper threads for %.1f s%n", threads, elapsed);
+        System.out.printf("reserved  %,d (%,.0f per second)%n", reserved.sum(), reserved.sum() / elapsed);
+        System.out.printf("committed %,d%n", committed.sum());
+        System.out.printf("refused   %,d%n", refused.sum());
+        System.out.printf("on hand %,d, available %,d%n", stock.getOnHand(), stock.getAvailable());
+        boolean balanced = stock.getOnHand() == stock.getAvailable() && stock.getOnHand() >= 0
+                && stock.getOnHand() <= lastSet.get() && belowZero.sum() == 0;
+        System.out.println(balanced ? "stock balanced" : "STOCK NOT BALANCED");
+        if (!balanced) {
+            System.exit(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package entities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks that reserving, committing and releasing stock from many threads at once neither oversells nor
+ * loses stock. Each round starts the threads together on one StockLevel:
+ * <ul>
+ * <li>shoppers reserve one unit at a time until the stock runs out, and exactly the stock on hand must be
+ * reserved;</li>
+ * <li>shoppers commit half of what they reserved and release the rest, and the stock on hand must fall by
+ * exactly what was committed, with nothing left reserved;</li>
+ * <li>shoppers reserve and commit while a restocker adds stock, and the stock on hand must be the starting
+ * stock plus what was added less what was committed;</li>
+ * <li>shoppers reserve and then commit or release while an admin sets the stock on hand to nothing, which
+ * only lowers it to what is reserved, and neither the stock on hand nor the stock available may ever be
+ * seen below zero, nor end above what the admin last set.</li>
+ * </ul>
+ * Setting the stock on hand below what is reserved is first checked on one thread, where the result is exact.
+ * <p>
+ * Run with: java -cp out entities.StockLevelRaceCheck [threads] [rounds]
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class StockLevelRaceCheck {
+    private static final int STOCK = 20_000;
+    private static int failures;
+
+    /**
+     * Runs the check.
+     *
+     * @param args the number of threads and the number of rounds of each race, both optional
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0])
+                : Math.max(4, Runtime.getRuntime().availableProcessors());
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        setOnHandBelowReserved();
+        for (int round = 0; round < rounds; round++) {
+            reserveUntilSoldOut(threads);
+            commitAndRelease(threads);
+            reserveWhileRestocking(threads);
+            reserveWhileSettingOnHand(threads);
+        }
+        if (failures > 0) {
+            System.out.println("FAILED: " + failures + " checks failed");
+            System.exit(1);
+        }
+        System.out.println("OK: " + rounds + " rounds of each race on " + threads + " threads balanced");
+    }
+
+    private static void reserveUntilSoldOut(int threads) throws InterruptedException {
+        StockLevel stock = new StockLevel(STOCK);
+        LongAdder reserved = new LongAdder();
+        race(threads, () -> {
+            while (stock.tryReserve(1)) {
+                reserved.increment();
+            }
+        });
+        check(reserved.sum() == STOCK, "reserved " + reserved.sum() + " of " + STOCK + " units");
+        check(stock.getAvailable() == 0 && stock.getOnHand() == STOCK,
+                "after selling out, available " + stock.getAvailable() + " and on hand " + stock.getOnHand());
+    }
+
+    private static void commitAndRelease(int threads) throws InterruptedException {
+        StockLevel stock = new StockLevel(STOCK);
+        int perThread = STOCK / threads;
+        LongAdder committed = new LongAdder();
+        race(threads, () -> {
+            int held = 0;
+            while (held < perThread && stock.tryReserve(1)) {
+                held++;
+            }
+            for (int i = 0; i < held; i++) {
+                if (i % 2 == 0) {
+                    stock.commit(1);
+                    committed.increment();
+                } else {
+                    stock.release(1);
+                }
+            }
+        });
+        check(stock.getOnHand() == STOCK - committed.sum(),
+                "on hand " + stock.getOnHand() + " after committing " + committed.sum() + " of " + STOCK);
+        check(stock.getAvailable() == stock.getOnHand(),
+                "available " + stock.getAvailable() + " but on hand " + stock.getOnHand() + " with nothing held");
+    }
+
+    private static void reserveWhileRestocking(int threads) throws InterruptedException {
+        StockLevel stock = new StockLevel(0);
+        LongAdder committed = new LongAdder();
+        AtomicInteger restockers = new AtomicInteger();
+        // the first thread restocks one unit at a time, the rest buy whatever they can
+        race(threads, () -> {
+            if (restockers.getAndIncrement() == 0) {
+                for (int i = 0; i < STOCK; i++) {
+                    stock.restock(1);
+                }
+                return;
+            }
+            for (int i = 0; i < STOCK / threads; i++) {
+                if (stock.tryReserve(1)) {
+                    stock.commit(1);
+                    committed.increment();
+                }
+            }
+        });
+        check(stock.getOnHand() == STOCK - committed.sum(),
+                "on hand " + stock.getOnHand() + " after restocking " + STOCK + " and committing " + committed.sum());
+        check(stock.getAvailable() == stock.getOnHand(),
+                "available " + stock.getAvailable() + " but on hand " + stock.getOnHand() + " with nothing held");
+    }
+
+    // setting the stock on hand below what is reserved lowers it only to what is reserved
+    private static void setOnHandBelowReserved() {
+        StockLevel stock = new StockLevel(10);
+        stock.tryReserve(5);
+        int set = stock.setOnHand(0);
+        check(set == 5 && stock.getOnHand() == 5 && stock.getAvailable() == 0,
+                "setting 0 with 5 reserved set " + set + ", on hand " + stock.getOnHand() + ", available "
+                        + stock.getAvailable());
+        stock.commit(2);
+        stock.release(3);
+        check(stock.getOnHand() == 3 && stock.getAvailable() == 3,
+                "after committing 2 and releasing 3, on hand " + stock.getOnHand() + ", available "
+                        + stock.getAvailable());
+    }
+
+    private static void reserveWhileSettingOnHand(int threads) throws InterruptedException {
+        StockLevel stock = new StockLevel(STOCK);
+        LongAdder belowZero = new LongAdder();
+        AtomicInteger admins = new AtomicInteger();
+        AtomicInteger lastSet = new AtomicInteger(STOCK);
+        // the first thread is the admin, who keeps setting the stock on hand to nothing and back; the others
+        // reserve and then commit or release, so the admin's setting is often lowered to what they hold
+        race(threads, () -> {
+            if (admins.getAndIncrement() == 0) {
+                for (int i = 0; i < STOCK / 10; i++) {
+                    lastSet.set(stock.setOnHand(i % 2 == 0 ? 0 : STOCK));
+                }
+                return;
+            }
+            for (int i = 0; i < STOCK / threads; i++) {
+                if (!stock.tryReserve(1)) {
+                    continue;
+                }
+                if (i % 2 == 0) {
+                    stock.commit(1);
+                } else {
+                    stock.release(1);
+                }
+                if (stock.getOnHand() < 0 || stock.getAvailable() < 0) {
+                    belowZero.increment();
+                }
+            }
+        });
+        check(belowZero.sum() == 0, "stock was seen below zero " + belowZero.sum() + " times");
+        check(stock.getAvailable() == stock.getOnHand(),
+                "available " + stock.getAvailable() + " but on hand " + stock.getOnHand() + " with nothing held");
+        // commits since the admin last set the stock can only have lowered it
+        check(stock.getOnHand() >= 0 && stock.getOnHand() <= lastSet.get(),
+                "on hand " + stock.getOnHand() + " but last set to " + lastSet.get());
+    }
+
+    // runs the task on every thread at once and waits for them all to finish
+    private static void race(int threads, Runnable task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> racers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread racer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                task.run();
+            }, "racer-" + i);
+            racers.add(racer);
+            racer.start();
+        }
+        start.countDown();
+        for (Thread racer : racers) {
+            racer.join();
+        }
+    }
+
+    private static void check(boolean passed, String failure) {
+        if (!passed) {
+            failures++;
+            System.out.println("FAILED: " + failure);
+        }
+    }
+}
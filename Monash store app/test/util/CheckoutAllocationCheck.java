@@ -0,0 +1,119 @@
+package util;
+
+import entities.CartItem;
+import entities.Product;
+import entities.ShoppingCart;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that the checkout path allocates nothing per item once it is warmed up. The cart total is read from
+ * the shopping cart, each item's total is worked out in cents, and the checkout table is built in one reused
+ * buffer with Money.appendCents; none of these should create objects. The bytes allocated by the current
+ * thread are read from the JVM's ThreadMXBean before and after many checkouts, and the check fails if any
+ * were allocated. The bytes allocated to format each order's ledger line, which has to be a new string, and
+ * to format the table with String.format, as the checkout did before, are printed for comparison.
+ * <p>
+ * Run with: java -cp out util.CheckoutAllocationCheck [items] [checkouts]
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class CheckoutAllocationCheck {
+    private static final int WARM_UP_CHECKOUTS = 200_000;
+    // the result of every checkout is added in, so none of the work can be optimised away
+    private static long sink;
+
+    /**
+     * Runs the check.
+     *
+     * @param args the number of items in the cart and the number of checkouts to measure, both optional
+     */
+    public static void main(String[] args) {
+        int itemCount = args.length > 0 ? Integer.parseInt(args[0]) : ShoppingCart.MAX_LINES;
+        int checkouts = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("This JVM does not measure allocation per thread.");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        List<CartItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new CartItem(new Product("Product " + i, "Brand", "Category", "Sub-category",
+                    1.05 + i, 1.00 + i, 100, "Description"), 1 + i % 10));
+        }
+        ShoppingCart cart = new ShoppingCart(items);
+        List<CartItem> lines = cart.getItems();
+        StringBuilder table = new StringBuilder();
+
+        for (int i = 0; i < WARM_UP_CHECKOUTS; i++) {
+            sink += checkout(cart, lines, table);
+            sink += formatted(lines);
+            sink += OrderLedger.formatOrder(i, "member@student.monash.edu", cart.getTotalCents(), lines).length();
+        }
+
+        // what reading the counter allocates itself, taken off each reading
+        long first = allocated(threads);
+        long overhead = allocated(threads) - first;
+        long before = allocated(threads);
+        for (int i = 0; i < checkouts; i++) {
+            sink += checkout(cart, lines, table);
+        }
+        long checkoutBytes = allocated(threads) - before - overhead;
+
+        int sampled = Math.max(1, checkouts / 100);
+        before = allocated(threads);
+        for (int i = 0; i < sampled; i++) {
+            sink += OrderLedger.formatOrder(i, "member@student.monash.edu", cart.getTotalCents(), lines).length();
+        }
+        long ledgerBytes = allocated(threads) - before - overhead;
+        before = allocated(threads);
+        for (int i = 0; i < sampled; i++) {
+            sink += formatted(lines);
+        }
+        long formattedBytes = allocated(threads) - before - overhead;
+
+        System.out.printf("%d items, %d checkouts%n", itemCount, checkouts);
+        System.out.printf("checkout totals and table: %d bytes in all%n", checkoutBytes);
+        System.out.printf("ledger line:               %d bytes per order%n", ledgerBytes / sampled);
+        System.out.printf("table with String.format:  %d bytes per order%n", formattedBytes / sampled);
+        System.out.println("(" + sink + ")");
+        if (checkoutBytes > 0) {
+            System.out.println("FAILED: the checkout path allocated " + checkoutBytes + " bytes");
+            System.exit(1);
+        }
+        System.out.println("OK: the checkout path allocated nothing");
+    }
+
+    // reads the totals and builds the checkout table as MonashMerchantSystem.printCheckoutItems does
+    private static long checkout(ShoppingCart cart, List<CartItem> lines, StringBuilder table) {
+        table.setLength(0);
+        long total = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            CartItem item = lines.get(i);
+            table.append(item.getProduct().getProductName()).append(' ').append(item.getQuantity()).append(' ');
+            Money.appendCents(table, item.getUnitPriceCents()).append(' ');
+            Money.appendCents(table, item.getTotalCents()).append(System.lineSeparator());
+            total += item.getTotalCents();
+        }
+        return total == cart.getTotalCents() ? table.length() : -1;
+    }
+
+    // builds the table with String.format, for comparison
+    private static long formatted(List<CartItem> lines) {
+        StringBuilder table = new StringBuilder();
+        for (CartItem item : lines) {
+            table.append(String.format("%-20s %-10d %-15.2f %.2f%n", item.getProduct().getProductName(),
+                    item.getQuantity(), item.getUnitPriceCents() / 100.0, item.getTotalCents() / 100.0));
+        }
+        return table.length();
+    }
+
+    private static long allocated(com.sun.management.ThreadMXBean threads) {
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,171 @@
+package util;
+
+import entities.CartItem;
+import entities.Inventory;
+import entities.Product;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks that the inventory journal replays to the inventory it recorded, and that a checkpoint keeps it.
+ * Products are added one at a time and together, edited, renamed, restocked and deleted, and orders placed,
+ * each change made to an inventory and recorded in a journal over a snapshot file; an edit onto the name and
+ * brand of another product must be refused, as keys are unique. The journal is then reopened and replayed
+ * over the snapshot, and must give the same products, with the funds and ledger line of each order. A torn
+ * order line and a batch of added products cut off before its end line, as a crash part way through an
+ * append leaves them, must be skipped. Once checkpointed, the journal must be empty and the snapshot alone
+ * must give the same products, with no orders left to recover.
+ * <p>
+ * Run with: java -cp out util.InventoryJournalCheck
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class InventoryJournalCheck {
+    private static int failures;
+
+    /**
+     * Runs the check.
+     *
+     * @param args not used
+     * @throws IOException if the temporary files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("journal-check");
+        String snapshot = directory.resolve("inventory.txt").toString();
+        String journalFile = directory.resolve("inventory.journal").toString();
+        Files.write(directory.resolve("inventory.txt"), List.of(
+                "nutbar,coles,food,health,3.00,2.50,52,nut bar",
+                "bag,nike,accessories,bags,20.00,18.00,22,bag",
+                "book,cm,stationary,books,5.00,4.00,12,ruled book"));
+
+        InventoryJournal journal = new InventoryJournal(journalFile, snapshot);
+        Inventory inventory = journal.load();
+        check(inventory.size() == 3, "the snapshot loads 3 products, not " + inventory.size());
+
+        Product pen = new Product("pen", "bic", "stationary", "pens", 1.50, 1.20, 40, "blue pen");
+        inventory.addProduct(pen);
+        journal.recordAdd(pen);
+
+        List<Product> batch = List.of(
+                new Product("mug", "ikea", "kitchen", "cups", 4.00, 3.50, 8, "white mug"),
+                new Product("cap", "nike", "accessories", "hats", 15.00, 12.00, 5, "red cap"));
+        inventory.addProducts(batch);
+        journal.recordAdds(batch);
+
+        Product bag = inventory.findProduct("bag", "nike");
+        Product renamed = bag.copy();
+        renamed.setProductName("tote");
+        renamed.setPrice(22.50);
+        edit(inventory, journal, bag, renamed);
+
+        // keys are unique, so an edit onto the name and brand of another product is refused and not recorded
+        Product clash = pen.copy();
+        clash.setProductName("nutbar");
+        clash.setBrand("coles");
+        check(!inventory.replaceProduct(pen, clash.publish()), "an edit onto an existing key was accepted");
+
+        Product book = inventory.findProduct("book", "cm");
+        book.setQuantity(book.getQuantity() + 7);
+        journal.recordQuantityChange(book, 7);
+
+        Product mug = inventory.findProduct("mug", "ikea");
+        inventory.removeProduct(mug);
+        journal.recordDelete(mug);
+
+        Product nutbar = inventory.findProduct("nutbar", "coles");
+        Product tote = inventory.findProduct("tote", "nike");
+        String firstOrder = order(journal, 1, "member@student.monash.edu", 99400,
+                List.of(new CartItem(nutbar, 2), new CartItem(tote, 1)));
+        String secondOrder = order(journal, 2, "other@student.monash.edu", 5000,
+                List.of(new CartItem(pen, 4)));
+        List<String> recorded = lines(inventory);
+        journal.close();
+
+        // a crash part way through appending leaves the last line or batch torn
+        Path journalPath = directory.resolve("inventory.journal");
+        byte[] whole = Files.readAllBytes(journalPath);
+        List<String> tornTails = List.of(
+                "P,10.00,3,1,x@y,1.00,1,pen|bic,1",
+                "B,2" + System.lineSeparator() + "A,torn,brand,c,s,1.00,1.00,1,d" + System.lineSeparator());
+        for (String tail : tornTails) {
+            Files.write(journalPath, whole);
+            Files.writeString(journalPath, tail, StandardOpenOption.APPEND);
+            InventoryJournal reopened = new InventoryJournal(journalFile, snapshot);
+            Inventory replayed = reopened.load();
+            check(lines(replayed).equals(recorded), "the replayed products differ from those recorded:"
+                    + System.lineSeparator() + lines(replayed) + System.lineSeparator() + recorded);
+            check(replayed.findProduct("torn", "brand") == null, "a product of a torn batch was added");
+            check(replayed.findProduct("tote", "nike") != null && replayed.findProduct("bag", "nike") == null,
+                    "the renamed product is not under its new name only");
+            check(Double.valueOf(994.00).equals(reopened.getRecordedFunds().get("member@student.monash.edu"))
+                            && Double.valueOf(50.00).equals(reopened.getRecordedFunds().get("other@student.monash.edu"))
+                            && reopened.getRecordedFunds().size() == 2,
+                    "the recorded funds are " + reopened.getRecordedFunds());
+            check(reopened.getRecordedOrders().equals(List.of(firstOrder, secondOrder)),
+                    "the recorded orders are " + reopened.getRecordedOrders());
+            reopened.close();
+        }
+
+        InventoryJournal reopened = new InventoryJournal(journalFile, snapshot);
+        reopened.checkpoint(reopened.load());
+        check(Files.size(journalPath) == 0, "the journal is not empty after a checkpoint");
+        check(reopened.getRecordedOrders().isEmpty(), "orders are still recorded after a checkpoint");
+        reopened.close();
+
+        InventoryJournal afterCheckpoint = new InventoryJournal(journalFile, snapshot);
+        check(lines(afterCheckpoint.load()).equals(recorded), "the checkpointed products differ from those recorded");
+        check(afterCheckpoint.getRecordedOrders().isEmpty() && afterCheckpoint.getRecordedFunds().isEmpty(),
+                "orders are recovered from a checkpointed journal");
+        afterCheckpoint.close();
+
+        if (failures > 0) {
+            System.out.println("FAILED: " + failures + " checks failed");
+            System.exit(1);
+        }
+        System.out.println("OK: the journal replays and checkpoints to the recorded inventory");
+    }
+
+    // as MonashMerchantSystem.editProduct does, without a quantity change
+    private static void edit(Inventory inventory, InventoryJournal journal, Product product, Product edited) {
+        Product published = edited.publish();
+        check(inventory.replaceProduct(product, published), "the edit of " + product.getKey() + " was refused");
+        journal.recordEdit(product.getKey(), published);
+    }
+
+    // as the checkout pipeline does once an order's funds are checked and its holds committed
+    private static String order(InventoryJournal journal, long orderNumber, String email, long fundsCents,
+                                List<CartItem> items) {
+        long totalCents = 0;
+        for (CartItem item : items) {
+            item.getProduct().setQuantity(item.getProduct().getQuantity() - item.getQuantity());
+            totalCents += item.getTotalCents();
+        }
+        String ledgerEntry = OrderLedger.formatOrder(orderNumber, email, totalCents, items);
+        journal.recordOrder(email, fundsCents, items, ledgerEntry).join();
+        return ledgerEntry;
+    }
+
+    // the products as saved, in key order, as replay does not keep the listing order
+    private static List<String> lines(Inventory inventory) {
+        List<String> lines = new ArrayList<>();
+        for (Product product : inventory.getProducts()) {
+            lines.add(product.toStringForFileIO());
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static void check(boolean passed, String failure) {
+        if (!passed) {
+            failures++;
+            System.out.println("FAILED: " + failure);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package util;
+
+import entities.Inventory;
+import entities.Product;
+import entities.ProductSortOrder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures loading an inventory listed by stock and reading its listing. Loading parses each record once and
+ * sorts the parsed products, which is compared with sorting the raw records by a field parsed in the
+ * comparator, parsing each record about log n times. Reading the listing is measured with no stock changes, when the sorted view is kept, and with
+ * a stock change before every read or every thousand reads, when it is sorted again. The listing read last
+ * must be in order.
+ * <p>
+ * Run with: java -cp out util.ListingBenchmark [products] [reads]
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class ListingBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of products and the number of reads to time, both optional
+     * @throws IOException if the inventory file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int reads = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            lines.add("product" + i + ",brand" + i % 100 + ",category" + i % 10 + ",sub" + i % 3 + ","
+                    + (1 + random.nextInt(100)) + ".00,1.00," + random.nextInt(1000) + ",description " + i);
+        }
+        Path file = Files.createTempFile("listing", ".txt");
+        Files.write(file, lines);
+
+        long start = System.nanoTime();
+        List<String> sortedLines = new ArrayList<>(lines);
+        sortedLines.sort(Comparator.comparingInt((String line) -> Integer.parseInt(line.split(",")[6])).reversed());
+        report("sort records parsing in the comparator", System.nanoTime() - start, 1);
+
+        start = System.nanoTime();
+        List<Product> products = new FileIO().readProducts(file.toString());
+        long parsed = System.nanoTime();
+        List<Product> sortedProducts = ProductSortOrder.QUANTITY_DESCENDING.sort(products);
+        long sorted = System.nanoTime();
+        report("parse each record once", parsed - start, 1);
+        report("sort the parsed products", sorted - parsed, 1);
+
+        start = System.nanoTime();
+        Inventory inventory = new Inventory(ProductSortOrder.QUANTITY_DESCENDING);
+        inventory.setProducts(sortedProducts);
+        inventory.getProducts();
+        report("list and index the products", System.nanoTime() - start, 1);
+
+        report("read with no stock changes", timeReads(inventory, reads, 0, random), reads);
+        int changing = Math.max(1, reads / 1000);
+        report("read after a stock change every 1000 reads", timeReads(inventory, changing * 1000, 1000, random),
+                changing * 1000);
+        report("read after every stock change", timeReads(inventory, changing, 1, random), changing);
+
+        Files.delete(file);
+        List<Product> listed = inventory.getProducts();
+        for (int i = 1; i < listed.size(); i++) {
+            if (listed.get(i - 1).getQuantity() < listed.get(i).getQuantity()) {
+                System.out.println("LISTING OUT OF ORDER at " + i);
+                System.exit(1);
+            }
+        }
+        System.out.println("listing in order");
+    }
+
+    // reads products by position, restocking a random product every given number of reads if it is not 0
+    private static long timeReads(Inventory inventory, int reads, int changeEvery, Random random) {
+        int size = inventory.size();
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            if (changeEvery > 0 && i % changeEvery == 0) {
+                inventory.getProducts().get(random.nextInt(size)).getStock().restock(1);
+            }
+            checksum += inventory.getProduct(i % size).getQuantity();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) {
+            System.out.println(checksum);
+        }
+        return elapsed;
+    }
+
+    private static void report(String name, long nanos, int operations) {
+        System.out.printf("%-45s %,12.1f ms %,12.0f ns/op%n", name, nanos / 1e6, (double) nanos / operations);
+    }
+}
@@ -0,0 +1,212 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Checks that the record reader splits, trims and parses fields as the rest of the system expects, and that
+ * malformed lines are reported once, with their line number, and read as zero rather than as a wrong value.
+ * Whole numbers just past the range of an int, and ones too long for a long, must be reported rather than
+ * wrap around. Decimal numbers must parse to exactly what Double.parseDouble gives, both on the fast path
+ * and through exponents and long mantissas. Blank lines, Windows line endings, a last line without a line
+ * separator and a line longer than the read buffer must all be read, from a file and from a chunk.
+ * <p>
+ * Run with: java -cp out util.RecordReaderCheck
+ *
+ * @author Abbishek Kamak, Bao Hoang, Muskaan Sheik, Tom
+ * @version 5/16/2024
+ */
+public class RecordReaderCheck {
+    private static final int RANDOM_NUMBERS = 200_000;
+    private static int failures;
+
+    /**
+     * Runs the check.
+     *
+     * @param args not used
+     * @throws IOException if the temporary file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("records", ".txt");
+        List<String> reports = new ArrayList<>();
+
+        // whole numbers
+        checkInt(file, reports, "2147483647", Integer.MAX_VALUE, false);
+        checkInt(file, reports, "-2147483648", Integer.MIN_VALUE, false);
+        checkInt(file, reports, "+42", 42, false);
+        checkInt(file, reports, " 7 ", 7, false);
+        checkInt(file, reports, "2147483648", 0, true);
+        checkInt(file, reports, "-2147483649", 0, true);
+        checkInt(file, reports, "99999999999999999999999", 0, true);
+        checkInt(file, reports, "12a", 0, true);
+        checkInt(file, reports, "-", 0, true);
+        checkInt(file, reports, "", 0, true);
+        checkInt(file, reports, "1.5", 0, true);
+
+        // decimal numbers
+        checkDouble(file, reports, "4.50", 4.50, false);
+        checkDouble(file, reports, "-0.25", -0.25, false);
+        checkDouble(file, reports, "1e3", 1000.0, false);
+        checkDouble(file, reports, "12345678901234567890.5", 12345678901234567890.5, false);
+        checkDouble(file, reports, "0.1234567890123456789", 0.1234567890123456789, false);
+        checkDouble(file, reports, ".", 0, true);
+        checkDouble(file, reports, "1.2.3", 0, true);
+        checkDouble(file, reports, "abc", 0, true);
+        checkDouble(file, reports, "", 0, true);
+        Random random = new Random(19);
+        List<String> decimals = new ArrayList<>(RANDOM_NUMBERS);
+        for (int i = 0; i < RANDOM_NUMBERS; i++) {
+            decimals.add(randomDecimal(random));
+        }
+        Files.write(file, decimals);
+        int mismatches = 0;
+        try (RecordReader reader = new RecordReader(file.toString(), reports::add)) {
+            for (String decimal : decimals) {
+                reader.next();
+                double value = reader.getDouble(0);
+                if ((Double.compare(value, Double.parseDouble(decimal)) != 0 || reader.isMalformed())
+                        && mismatches++ < 5) {
+                    check(false, "\"" + decimal + "\" read as " + value);
+                }
+            }
+        }
+        check(mismatches == 0, mismatches + " of " + RANDOM_NUMBERS + " random decimals differ from parseDouble");
+
+        // lines, field counts and reporting
+        StringBuilder longField = new StringBuilder();
+        while (longField.length() < 200_000) {
+            longField.append("long field ");
+        }
+        String text = "a, b ,3" + System.lineSeparator()
+                + System.lineSeparator()
+                + "c,d,x,y\r\n"
+                + "e,f,5" + "\r\n"
+                + "g,h,9999999999,z,w\n"
+                + "   \n"
+                + "i," + longField + ",6\n"
+                + "j,k,8";
+        write(file, text);
+        reports.clear();
+        List<String> read = new ArrayList<>();
+        try (RecordReader reader = new RecordReader(file.toString(), reports::add)) {
+            read(reader, read);
+            check(reader.getMalformedCount() == 2, "reported " + reader.getMalformedCount() + " malformed lines, not 2");
+        }
+        List<String> expected = List.of("1:a|b|3", "4:e|f|5", "7:i|" + longField.toString().trim() + "|6", "8:j|k|8");
+        check(read.equals(expected), "read " + abbreviate(read) + " instead of " + abbreviate(expected));
+        check(reports.size() == 2 && reports.get(0).startsWith(file + ":3: expected 3 fields but found 4")
+                        && reports.get(1).startsWith(file + ":5: expected 3 fields but found 5"),
+                "reported " + reports);
+
+        // two bad fields on one line are reported once
+        write(file, "p,q,r\n");
+        reports.clear();
+        try (RecordReader reader = new RecordReader(file.toString(), reports::add)) {
+            reader.next();
+            reader.getInt(0);
+            reader.getDouble(1);
+            check(reader.isMalformed() && reader.getMalformedCount() == 1 && reports.size() == 1,
+                    "a line with two bad fields was reported " + reports.size() + " times");
+        }
+
+        // the same records from a chunk, numbered from the start of the chunk
+        List<String> chunkReports = new ArrayList<>();
+        List<String> fromChunk = new ArrayList<>();
+        try (RecordReader reader = new RecordReader(file.toString(),
+                ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)),
+                (reason, line) -> chunkReports.add(line + ": " + reason))) {
+            read(reader, fromChunk);
+        }
+        check(fromChunk.equals(expected), "read " + abbreviate(fromChunk) + " from a chunk");
+        check(chunkReports.equals(List.of("3: expected 3 fields but found 4", "5: expected 3 fields but found 5")),
+                "reported " + chunkReports + " from a chunk");
+
+        Files.delete(file);
+        if (failures > 0) {
+            System.out.println("FAILED: " + failures + " checks failed");
+            System.exit(1);
+        }
+        System.out.println("OK: records are split, parsed and reported as expected");
+    }
+
+    private static void checkInt(Path file, List<String> reports, String field, int expected, boolean malformed)
+            throws IOException {
+        write(file, "x," + field + ",y");
+        reports.clear();
+        try (RecordReader reader = new RecordReader(file.toString(), reports::add)) {
+            reader.next();
+            int value = reader.getInt(1);
+            check(value == expected && reader.isMalformed() == malformed && reports.size() == (malformed ? 1 : 0),
+                    "\"" + field + "\" read as " + value + (reader.isMalformed() ? ", malformed" : "")
+                            + " instead of " + expected + (malformed ? ", malformed" : ""));
+        }
+    }
+
+    private static void checkDouble(Path file, List<String> reports, String field, double expected,
+                                    boolean malformed) throws IOException {
+        write(file, "x," + field + ",y");
+        reports.clear();
+        try (RecordReader reader = new RecordReader(file.toString(), reports::add)) {
+            reader.next();
+            double value = reader.getDouble(1);
+            check(Double.compare(value, expected) == 0 && reader.isMalformed() == malformed
+                            && reports.size() == (malformed ? 1 : 0),
+                    "\"" + field + "\" read as " + value + (reader.isMalformed() ? ", malformed" : "")
+                            + " instead of " + expected + (malformed ? ", malformed" : ""));
+        }
+    }
+
+    // reads every three-field record as "line:field|field|field", skipping malformed ones as callers do
+    private static void read(RecordReader reader, List<String> read) throws IOException {
+        while (reader.next()) {
+            if (!reader.expectFields(3)) {
+                continue;
+            }
+            int number = reader.getInt(2);
+            if (!reader.isMalformed()) {
+                read.add(reader.getLineNumber() + ":" + reader.getString(0) + "|" + reader.getString(1) + "|"
+                        + number);
+            }
+        }
+    }
+
+    // a price-like decimal, sometimes with many digits or an exponent, so both parsing paths are taken
+    private static String randomDecimal(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return String.format(Locale.ROOT, "%.2f", random.nextDouble() * 10_000);
+            case 1:
+                return Long.toString(random.nextLong() >>> random.nextInt(64)) + "." + random.nextInt(1000);
+            case 2:
+                return Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(30) - 10));
+            default:
+                return (random.nextBoolean() ? "-" : "") + random.nextInt(1_000_000) + "." + random.nextInt(100);
+        }
+    }
+
+    private static void write(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String abbreviate(List<String> lines) {
+        List<String> shown = new ArrayList<>();
+        for (String line : lines) {
+            shown.add(line.length() > 60 ? line.substring(0, 60) + "..." : line);
+        }
+        return shown.toString();
+    }
+
+    private static void check(boolean passed, String failure) {
+        if (!passed) {
+            failures++;
+            System.out.println("FAILED: " + failure);
+        }
+    }
+}